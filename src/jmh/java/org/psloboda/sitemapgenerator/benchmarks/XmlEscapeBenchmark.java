@@ -0,0 +1,85 @@
+package org.psloboda.sitemapgenerator.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link UrlUtils#escapeXml(CharSequence, StringBuilder)} with the regex-based escaper it replaced,
+ * appending a loc or title to a reused builder as the renderers do.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="XmlEscapeBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlEscapeBenchmark {
+    private static final Map<String, String> ENTITIES = new HashMap<>();
+    private static final Pattern PATTERN = Pattern.compile("([&'\"><])");
+
+    static {
+        ENTITIES.put("&", "&amp;");
+        ENTITIES.put("'", "&apos;");
+        ENTITIES.put("\"", "&quot;");
+        ENTITIES.put(">", "&gt;");
+        ENTITIES.put("<", "&lt;");
+    }
+
+    @Param({
+            "https://www.example.com/catalog/shoes/running/product-123456",
+            "https://www.example.com/search?q=shoes&size=44&color=red&sort=price",
+            "Tom's \"best\" <running> shoes & more"
+    })
+    public String text;
+
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        sb = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public int regex() {
+        sb.setLength(0);
+        sb.append(legacyEscapeXml(text));
+        return sb.length();
+    }
+
+    @Benchmark
+    public int scanning() {
+        sb.setLength(0);
+        UrlUtils.escapeXml(text, sb);
+        return sb.length();
+    }
+
+    private static String legacyEscapeXml(String string) {
+        Matcher matcher = PATTERN.matcher(string);
+        StringBuilder sb = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(sb, ENTITIES.get(matcher.group(1)));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+}
@@ -1,10 +1,16 @@
 package org.psloboda.sitemapgenerator.generators;
 
 import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.sinks.SitemapSink;
+import org.psloboda.sitemapgenerator.sinks.StagingSitemapSink;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 // that weird thing with generics is so sub-classed objects will return themselves
 // It makes sense, I swear! http://madbean.com/2004/mb2004-3/
@@ -17,8 +23,23 @@ public abstract class AbstractSitemapGeneratorOptions<T extends AbstractSitemapG
     protected String suffixStringPattern; // this will store some type of string pattern suitable per needs.
     protected W3CDateTimeFormatter dateTimeFormatter;
     protected int maxUrls = SitemapGenerator.MAX_URLS_PER_SITEMAP;
+    protected long maxFileSize = SitemapGenerator.MAX_SITEMAP_SIZE;
     protected boolean autoValidate = false;
     protected boolean gzip = false;
+    protected boolean streaming = false;
+    protected Executor renderExecutor;
+    protected SitemapSink sink;
+    protected Executor gzipExecutor;
+    protected int asyncFlush = 0;
+    protected Consumer<? super CompletableFuture<File>> onAsyncFlush;
+    protected boolean incremental = false;
+    protected StagingSitemapSink staging;
+    protected boolean deduplicate = false;
+    protected long dedupExpectedUrls = 0;
+    protected double dedupFalsePositiveRate = 0;
+    protected boolean spillToDisk = false;
+    protected Path spillDir;
+    protected boolean offHeap = false;
 
     AbstractSitemapGeneratorOptions(URL baseUrl, File baseDir) {
         if (baseUrl == null) throw new NullPointerException("baseUrl may not be null");
@@ -84,6 +105,19 @@ public abstract class AbstractSitemapGeneratorOptions<T extends AbstractSitemapG
         return getThis();
     }
 
+    /**
+     * The maximum size in bytes of one uncompressed sitemap file; the default is the maximum allowed (50MB).
+     * A sitemap is closed before the next URL would take it past this size, whether or not it is gzipped,
+     * and the URL goes into the next sitemap.
+     */
+    public T maxFileSize(long maxFileSize) {
+        if (maxFileSize > SitemapGenerator.MAX_SITEMAP_SIZE) {
+            throw new SitemapGeneratorException("A sitemap may be at most 50MB (52,428,800 bytes) uncompressed. You asked for " + maxFileSize);
+        }
+        this.maxFileSize = maxFileSize;
+        return getThis();
+    }
+
     /**
      * Validate the sitemaps automatically after writing them; this takes time (and may fail for Google-specific sitemaps)
      */
@@ -100,6 +134,165 @@ public abstract class AbstractSitemapGeneratorOptions<T extends AbstractSitemapG
         return getThis();
     }
 
+    /**
+     * Write sitemaps to this sink instead of to files in the base directory, e.g. to a
+     * {@link org.psloboda.sitemapgenerator.sinks.PathSitemapSink} on another file system, a
+     * {@link org.psloboda.sitemapgenerator.sinks.StreamSitemapSink} or an
+     * {@link org.psloboda.sitemapgenerator.sinks.InMemorySitemapSink}
+     */
+    public T sink(SitemapSink sink) {
+        this.sink = sink;
+        return getThis();
+    }
+
+    /**
+     * Compress gzipped sitemaps in blocks on this executor, using all of its threads for one file, instead of
+     * on the thread that writes the file. The output is still a single standard gzip stream.
+     *
+     * <p>The thread writing a file waits for its compressed blocks, so don't let this executor share threads with
+     * the {@link #renderExecutor(Executor)} unless it is a {@link java.util.concurrent.ForkJoinPool}, which runs
+     * other tasks while one waits: a bounded pool can fill up with renders waiting for blocks that never get a
+     * thread. Passing the same executor to both is rejected unless it is a fork/join pool.</p>
+     *
+     * @see org.psloboda.sitemapgenerator.utils.ParallelGZIPOutputStream
+     */
+    public T gzipExecutor(Executor gzipExecutor) {
+        this.gzipExecutor = gzipExecutor;
+        return getThis();
+    }
+
+    /**
+     * Render each URL into the open sitemap file as soon as it is added, instead of buffering up to
+     * {@link #maxUrls(int)} URLs in memory; memory use then stays flat no matter how many URLs are added.
+     * Only applies when a base directory is configured.
+     */
+    public T streaming(boolean streaming) {
+        this.streaming = streaming;
+        return getThis();
+    }
+
+    /**
+     * Render independent sitemaps concurrently on this executor, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     * Files are still written in order, so their names and the list returned by {@code write()} are the same
+     * as without an executor. Has no effect in streaming mode.
+     *
+     * <p>Don't let this executor share threads with the {@link #gzipExecutor(Executor)} unless it is a
+     * {@link java.util.concurrent.ForkJoinPool}: a render waits for its gzipped blocks, so a bounded pool can fill
+     * up with renders and deadlock. Passing the same executor to both is rejected unless it is a fork/join
+     * pool.</p>
+     */
+    public T renderExecutor(Executor renderExecutor) {
+        this.renderExecutor = renderExecutor;
+        return getThis();
+    }
+
+    /**
+     * Hand full sitemaps to a background writer instead of rendering and writing them inside {@code addUrl}.
+     * Once this many are waiting to be written, {@code addUrl} blocks until one is done; {@code write()} waits
+     * for all of them and fails if any of them failed. 0, the default, writes sitemaps on the calling thread.
+     */
+    public T asyncFlush(int maxPendingFlushes) {
+        return asyncFlush(maxPendingFlushes, null);
+    }
+
+    /**
+     * Like {@link #asyncFlush(int)}, and hands the listener a future for each sitemap file the background writer
+     * writes, in file order, on the thread adding URLs as soon as the file is named. The future completes with
+     * the file once it is written, or with null when the sink doesn't write files, and fails if writing it fails.
+     */
+    public T asyncFlush(int maxPendingFlushes, Consumer<? super CompletableFuture<File>> onFlush) {
+        if (maxPendingFlushes < 0) throw new IllegalArgumentException("maxPendingFlushes may not be negative: " + maxPendingFlushes);
+        this.asyncFlush = maxPendingFlushes;
+        this.onAsyncFlush = onFlush;
+        return getThis();
+    }
+
+    /**
+     * Leave sitemaps in the base directory untouched when their content hasn't changed since the last run,
+     * so they keep their modification time and their {@code <lastmod>} in the sitemap index. A manifest of
+     * content hashes is kept next to the sitemaps, named after {@link #fileNamePrefix(String)}, e.g.
+     * "sitemap.manifest"; sitemaps from the last run that aren't written again are deleted.
+     * {@code write()} then returns only the sitemaps that changed.
+     *
+     * @see org.psloboda.sitemapgenerator.sinks.IncrementalSitemapSink
+     */
+    public T incremental(boolean incremental) {
+        this.incremental = incremental;
+        return getThis();
+    }
+
+    /**
+     * Write the sitemaps, and the sitemap index, into the staging directory of a new generation instead of
+     * the base directory; they go live all at once when you call {@link StagingSitemapSink#publish()}.
+     * Sitemaps that haven't changed since the live generation are hard-linked rather than written again.
+     */
+    public T publish(StagingSitemapSink staging) {
+        this.staging = staging;
+        return getThis();
+    }
+
+    /**
+     * Silently skip URLs that have already been added, comparing them as written. Every URL costs 11 to 21 bytes
+     * of heap for as long as the generator lives; for hundreds of millions of URLs use
+     * {@link #deduplicate(long, double)} instead.
+     */
+    public T deduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        this.dedupExpectedUrls = 0;
+        return getThis();
+    }
+
+    /**
+     * Silently skip URLs that have already been added, using a Bloom filter that takes a fixed amount of memory,
+     * about 1.2 bytes per expected URL at a 1% false positive rate. A duplicate is always skipped, but so is a
+     * new URL with roughly the given probability, which grows once more URLs than expected have been added.
+     *
+     * @param expectedUrls      the number of distinct URLs to size the filter for
+     * @param falsePositiveRate the chance of skipping a new URL, e.g. 0.001
+     */
+    public T deduplicate(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls < 1) throw new IllegalArgumentException("expectedUrls must be positive: " + expectedUrls);
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        this.deduplicate = true;
+        this.dedupExpectedUrls = expectedUrls;
+        this.dedupFalsePositiveRate = falsePositiveRate;
+        return getThis();
+    }
+
+    /**
+     * Without a baseDir, render each full sitemap right away and keep it deflated in a temporary file instead of
+     * keeping its URLs on the heap until {@code writeAsStrings()}. Sitemaps are spilled to the system's temporary
+     * directory unless {@link #spillDir(Path)} says otherwise.
+     */
+    public T spillToDisk(boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+        return getThis();
+    }
+
+    /**
+     * Spill full sitemaps to a temporary file in this directory
+     *
+     * @see #spillToDisk(boolean)
+     */
+    public T spillDir(Path spillDir) {
+        this.spillToDisk = true;
+        this.spillDir = spillDir;
+        return getThis();
+    }
+
+    /**
+     * Render each URL as it is added and keep the encoded entries in direct buffers outside the heap until its
+     * sitemap is written, instead of keeping the URLs as objects. The heap then only holds a few bytes of
+     * bookkeeping per pending URL, so garbage collection pauses don't grow with their number. The buffers are
+     * reused from one sitemap to the next and handed back once the sitemaps are written. Has no effect in
+     * streaming mode.
+     */
+    public T offHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return getThis();
+    }
+
     @SuppressWarnings("unchecked")
     T getThis() {
         return (T) this;
@@ -4,6 +4,7 @@ import org.psloboda.sitemapgenerator.enums.ChangeFreq;
 import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
 import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
 import org.psloboda.sitemapgenerator.utils.UrlUtils;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 
 import java.net.URL;
@@ -48,21 +49,13 @@ public abstract class AbstractSitemapUrlOptions<U extends WebSitemapUrl, T exten
      * return, and search engines may use the information from both sources
      * differently.
      *
+     * <p>Any W3C datetime is accepted, from "2007" to "2007-08-01T10:15:30.123+02:00"; see
+     * {@link W3CDateParser#parse(CharSequence)} for the type each granularity is kept as.</p>
+     *
      * @see W3CDateTimeFormatter
      */
     public T lastMod(String lastMod) {
-        if (lastMod.length() == 10) {
-            this.lastMod = new W3CDateTimeFormatter().parseLocalDate(lastMod);
-        } else {
-            if (lastMod.endsWith("Z")) {
-                this.lastMod = new W3CDateTimeFormatter().parseInstant(lastMod);
-            } else if (lastMod.matches("-\\d{2}:\\d{2}")) {
-                this.lastMod = new W3CDateTimeFormatter().parseZonedDateTime(lastMod);
-            } else {
-                this.lastMod = new W3CDateTimeFormatter().parseLocalDateTime(lastMod);
-            }
-        }
-
+        this.lastMod = W3CDateParser.parse(lastMod);
         return getThis();
     }
 
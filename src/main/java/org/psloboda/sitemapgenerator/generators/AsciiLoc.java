@@ -0,0 +1,28 @@
+package org.psloboda.sitemapgenerator.generators;
+
+/**
+ * The characters of a URL kept as a prefix followed by ASCII bytes, read in place
+ *
+ * @param prefix the scheme and authority, or "" if the bytes hold the whole URL
+ */
+record AsciiLoc(String prefix, byte[] bytes, int offset, int byteCount) implements CharSequence {
+    @Override
+    public int length() {
+        return prefix.length() + byteCount;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return index < prefix.length() ? prefix.charAt(index) : (char) bytes[offset + index - prefix.length()];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(length()).append(this).toString();
+    }
+}
@@ -0,0 +1,165 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.ShardFormat.Rendered;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands each full buffer to a background writer, so the producer only waits once the configured number of flushes
+ * is pending. The writer renders and compresses a buffer into sitemap files in memory with its own encoder, split
+ * exactly as {@link DirectFlush} would split them, and later writes them to the sink.
+ *
+ * <p>Only the producer names files. Once a buffer is rendered and the number of files it fills is known, the
+ * producer gives them the next numbers in hand-off order, the next time it hands off a buffer, has to wait or
+ * finishes, and only then queues them to be written. Each file gets its future at that point, which is handed to
+ * the listener before the file is queued. The writer thus never touches the generator's numbering, and
+ * only reads a buffer after it was handed over through the executor's queue, which makes it visible to the writer.
+ * Everything runs on one thread in queue order, so a buffer's files are written before any handed off after it.</p>
+ */
+final class BackgroundFlush implements FlushStrategy {
+    private final SitemapFiles files;
+    private final ShardFormat format;
+    private final ThreadPoolExecutor flusher;
+    /**
+     * One per flush that may be pending, taken on hand-off and given back once its files are written
+     */
+    private final Semaphore permits;
+    private final ArrayDeque<Handoff> unnamed = new ArrayDeque<>();
+    private final List<CompletableFuture<File>> flushes = new ArrayList<>();
+    private final Consumer<? super CompletableFuture<File>> listener;
+    private volatile Throwable failure;
+
+    /**
+     * @param maxPending how many flushes may be pending before the producer blocks
+     * @param listener   receives the future of each file once it is named, or null
+     */
+    BackgroundFlush(SitemapFiles files, ShardFormat format, int maxPending, Consumer<? super CompletableFuture<File>> listener) {
+        this.files = files;
+        this.format = format;
+        this.listener = listener;
+        this.permits = new Semaphore(maxPending);
+        flusher = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "sitemap-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void flush(PendingUrls full) {
+        if (failure != null)
+            throw new SitemapGeneratorException("An earlier sitemap flush failed", failure);
+        nameRendered(false);
+        if (!permits.tryAcquire()) {
+            // the flushes holding the permits may just be waiting to be named
+            nameRendered(true);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SitemapGeneratorException("Interrupted while waiting to flush a sitemap", e);
+            }
+        }
+
+        unnamed.add(new Handoff(CompletableFuture.supplyAsync(() -> {
+            try {
+                return format.render(full);
+            } finally {
+                full.release();
+            }
+        }, flusher)));
+    }
+
+    /**
+     * Names the files of rendered buffers in hand-off order and queues them to be written
+     *
+     * @param all wait for every handed-off buffer to be rendered; otherwise stop at the first one that isn't yet
+     */
+    private void nameRendered(boolean all) {
+        while (!unnamed.isEmpty() && (all || unnamed.peek().rendered().isDone())) {
+            Handoff handoff = unnamed.poll();
+            List<Rendered> siteMaps;
+            try {
+                siteMaps = FlushStrategy.join(handoff.rendered());
+            } catch (RuntimeException e) {
+                failure = e;
+                permits.release();
+                throw e;
+            }
+            List<String> names = new ArrayList<>(siteMaps.size());
+            List<CompletableFuture<File>> written = new ArrayList<>(siteMaps.size());
+            for (int i = 0; i < siteMaps.size(); i++) {
+                names.add(files.nextName());
+                written.add(new CompletableFuture<>());
+            }
+            flushes.addAll(written);
+            if (listener != null) written.forEach(listener);
+            flusher.execute(() -> {
+                int i = 0;
+                try {
+                    for (; i < siteMaps.size(); i++) {
+                        files.writeRendered(names.get(i), siteMaps.get(i));
+                        List<File> file = files.toFiles(List.of(names.get(i)));
+                        written.get(i).complete(file.isEmpty() ? null : file.get(0));
+                    }
+                } catch (Throwable e) {
+                    failure = e;
+                    for (; i < siteMaps.size(); i++) {
+                        written.get(i).completeExceptionally(e);
+                    }
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean handsOff() {
+        return true;
+    }
+
+    /**
+     * Waits for every background flush and stops the background writer, then writes the rest on the calling thread
+     *
+     * @throws SitemapGeneratorException if any flush failed
+     */
+    @Override
+    public void finish(PendingUrls rest) {
+        try {
+            try {
+                nameRendered(true);
+            } finally {
+                flusher.shutdown();
+            }
+            for (CompletableFuture<File> future : flushes) {
+                FlushStrategy.join(future);
+            }
+            files.write(rest, false);
+        } finally {
+            rest.release();
+        }
+    }
+
+    @Override
+    public List<CompletableFuture<File>> getAsyncFlushes() {
+        return List.copyOf(flushes);
+    }
+
+    /**
+     * A buffer handed to the writer, to be named once it is rendered
+     */
+    private record Handoff(CompletableFuture<List<Rendered>> rendered) {
+    }
+}
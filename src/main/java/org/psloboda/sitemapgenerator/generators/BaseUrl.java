@@ -0,0 +1,63 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.net.URL;
+
+/**
+ * The base URL of a generator, parsed once, so that URLs under it can be checked with one region compare and
+ * kept as their path alone instead of as a {@link URL} apiece.
+ */
+final class BaseUrl {
+    /**
+     * The scheme and authority of the base URL as {@link URL#toExternalForm()} writes them, e.g.
+     * "https://www.example.com", or null if it has no authority
+     */
+    final String origin;
+
+    BaseUrl(URL url) {
+        origin = url.getAuthority() == null ? null : url.getProtocol() + "://" + url.getAuthority();
+    }
+
+    /**
+     * Where the path of a URL under this base starts: the length of the origin if the URL starts with exactly
+     * the same scheme and authority, followed by nothing, "/", "?" or "#"
+     *
+     * @return the index, or -1 if the URL isn't under this base in exactly that form
+     */
+    int pathStart(CharSequence url) {
+        if (origin == null) return -1;
+        int start = origin.length();
+        if (url instanceof String string) {
+            if (!string.startsWith(origin)) return -1;
+        } else {
+            if (url.length() < start) return -1;
+            for (int i = 0; i < start; i++) {
+                if (url.charAt(i) != origin.charAt(i)) return -1;
+            }
+        }
+        if (start < url.length()) {
+            char c = url.charAt(start);
+            if (c != '/' && c != '?' && c != '#') return -1;
+        }
+        return start;
+    }
+
+    /**
+     * Keeps a URL relative to this base if it is under it as {@link #pathStart(CharSequence)} requires and the
+     * rest is ASCII. Anything else, including a different case or an explicit default port, is left to
+     * {@link java.net.URL} and {@link org.psloboda.sitemapgenerator.utils.UrlUtils#checkUrl(URL, URL)}.
+     *
+     * @return the URL, or null if it can't be kept relative
+     */
+    RelativeWebSitemapUrl relativize(String url) {
+        int start = pathStart(url);
+        if (start < 0) return null;
+        int length = url.length();
+        byte[] path = new byte[length - start];
+        for (int i = start; i < length; i++) {
+            char c = url.charAt(i);
+            if (c >= 0x80) return null;
+            path[i - start] = (byte) c;
+        }
+        return new RelativeWebSitemapUrl(this, path);
+    }
+}
@@ -0,0 +1,59 @@
+package org.psloboda.sitemapgenerator.generators;
+
+/**
+ * An approximate set of URL fingerprints for runs too big to remember exactly: a URL that was added before is
+ * always recognized, but a new URL is taken for a duplicate, and dropped, with the configured probability.
+ * Takes about 1.2 bytes per expected URL at a 1% false positive rate.
+ */
+final class BloomFilter implements Deduplicator {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedUrls      the number of distinct URLs the filter is sized for
+     * @param falsePositiveRate the chance of dropping a new URL once that many have been added
+     */
+    BloomFilter(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls < 1) throw new IllegalArgumentException("expectedUrls must be positive: " + expectedUrls);
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        long optimal = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (optimal + 63) / 64);
+        if (words > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Bloom filter too large for " + expectedUrls + " URLs");
+        this.bits = new long[(int) words];
+        this.bitCount = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * Math.log(2)));
+    }
+
+    @Override
+    public boolean contains(long fingerprint) {
+        long hash = fingerprint;
+        long step = Long.rotateLeft(fingerprint, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash, bitCount);
+            if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+            hash += step;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        // derive the probe positions from the one fingerprint by double hashing
+        long hash = fingerprint;
+        long step = Long.rotateLeft(fingerprint, 32) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                added = true;
+            }
+            hash += step;
+        }
+        return added;
+    }
+}
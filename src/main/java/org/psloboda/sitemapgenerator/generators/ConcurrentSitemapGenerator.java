@@ -0,0 +1,223 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Lets many threads add URLs to one sitemap generator at the same time, without a global lock.
+ *
+ * <p>Each thread fills its own buffer and renders and writes it itself once it is full, so producers never wait
+ * on each other; the only shared steps are claiming sitemap numbers from a counter and, when multiple sitemaps
+ * are not allowed, counting the URLs added. A buffer grows as URLs are
+ * added, and once it has been written its list is reused for the thread's next sitemap. Call {@link #write()}
+ * once all producers are done. The partly filled buffers are then written out and the wrapped generator ends up
+ * in the same state as after its own {@code write()}, so {@link #writeSitemapsWithIndex()} indexes every
+ * sitemap.</p>
+ *
+ * <p>URLs from different threads are spread across the sitemaps in no particular order.</p>
+ *
+ * <pre>
+ * ConcurrentSitemapGenerator&lt;WebSitemapUrl&gt; g = new ConcurrentSitemapGenerator&lt;&gt;(
+ *         WebSitemapGenerator.builder("http://example.com", myDir).build());
+ * </pre>
+ *
+ * @param <U> the type of URL the wrapped generator accepts
+ */
+public class ConcurrentSitemapGenerator<U extends ISitemapUrl> {
+    private final SitemapGenerator<U, ?> generator;
+    private final int maxUrls;
+    private final ThreadLocal<Buffer<U>> buffers;
+    private final Queue<Buffer<U>> allBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mapCount = new AtomicInteger();
+    /**
+     * The URLs added by all threads together, only counted when multiple sitemaps are not allowed
+     */
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final ConcurrentSkipListMap<Integer, String> outNames = new ConcurrentSkipListMap<>();
+    private volatile boolean finished = false;
+
+    /**
+     * Wraps a generator that nothing has been added to yet; don't use the generator directly afterwards,
+     * except to write a sitemap index. Sitemaps are rendered from whole lists of URLs here, so the generator
+     * can't be streaming, flushing in the background, spilling to disk or buffering off-heap.
+     */
+    public ConcurrentSitemapGenerator(SitemapGenerator<U, ?> generator) {
+        if (!generator.isUnused())
+            throw new SitemapGeneratorException("The generator has already been used; wrap a new one");
+        if (generator.hasBufferMode())
+            throw new SitemapGeneratorException("ConcurrentSitemapGenerator can't be combined with streaming, asyncFlush, spillToDisk or offHeap");
+        this.generator = generator;
+        this.maxUrls = generator.getMaxUrls();
+        this.buffers = ThreadLocal.withInitial(() -> {
+            Buffer<U> buffer = new Buffer<>();
+            allBuffers.add(buffer);
+            return buffer;
+        });
+    }
+
+    /**
+     * Add one URL of the appropriate type; safe to call from any number of threads.
+     * When the calling thread's buffer is full, it writes out one sitemap immediately.
+     * If multiple sitemaps are not allowed, it throws an exception once all threads together have added the
+     * maximum number of URLs.
+     *
+     * @param url the URL to add
+     * @return this
+     */
+    public ConcurrentSitemapGenerator<U> addUrl(U url) {
+        Buffer<U> buffer = buffers.get();
+        // taken before checking finished, so write() either waits for this add or it fails
+        buffer.lock.lock();
+        try {
+            if (finished)
+                throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
+            generator.checkUrl(url);
+            // the URL is recorded once nothing can fail anymore
+            boolean counted = !generator.isAllowMultipleSitemaps();
+            if (counted && accepted.incrementAndGet() > maxUrls) {
+                accepted.decrementAndGet();
+                if (generator.isDuplicate(url)) return this;
+                throw new SitemapGeneratorException("More than " + maxUrls + " urls, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
+            }
+            if (!generator.isNew(url)) {
+                if (counted) accepted.decrementAndGet();
+                return this;
+            }
+            List<U> full = null;
+            if (buffer.urls.size() == maxUrls) {
+                full = buffer.urls;
+                buffer.urls = buffer.spare != null ? buffer.spare : new ArrayList<>();
+                buffer.spare = null;
+            }
+            buffer.urls.add(url);
+            if (full != null) {
+                writeSiteMaps(full);
+                full.clear();
+                buffer.spare = full;
+            }
+            return this;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    /**
+     * Add one URL of the appropriate type; safe to call from any number of threads.
+     *
+     * @param url the URL to add
+     * @return this
+     */
+    public ConcurrentSitemapGenerator<U> addUrl(String url) {
+        U sitemapUrl;
+        try {
+            sitemapUrl = generator.newUrl(url);
+        } catch (Exception e) {
+            throw new SitemapGeneratorException(e);
+        }
+        return addUrl(sitemapUrl);
+    }
+
+    /**
+     * Add multiple URLs of the appropriate type, one at a time; safe to call from any number of threads.
+     *
+     * @param urls the URLs to add
+     * @return this
+     */
+    public ConcurrentSitemapGenerator<U> addUrls(Iterable<? extends U> urls) {
+        for (U url : urls) addUrl(url);
+        return this;
+    }
+
+    /**
+     * Write out remaining URLs once all producers are done; this method can only be called once.
+     * URLs that other threads are still adding when it is called are waited for and written too; adding a URL
+     * fails from then on.
+     *
+     * @return a list of files we wrote out to disk, in sitemap number order; empty when a sink that doesn't write files is configured
+     */
+    public List<File> write() {
+        if (finished)
+            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
+        finished = true;
+
+        List<U> remaining = new ArrayList<>();
+        for (Buffer<U> buffer : allBuffers) {
+            // blocks while the buffer's thread is still adding, which may include writing out a whole sitemap
+            buffer.lock.lock();
+            try {
+                remaining.addAll(buffer.urls);
+                buffer.urls.clear();
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+        buffers.remove();
+
+        if (!generator.isAllowEmptySitemap() && remaining.isEmpty() && mapCount.get() == 0)
+            throw new SitemapGeneratorException("No URLs added, sitemap would be empty; you must add some URLs with addUrls");
+
+        if (mapCount.get() == 0 && remaining.size() <= maxUrls) {
+            List<ShardFormat.Rendered> siteMaps = generator.renderSiteMaps(remaining);
+            if (siteMaps.size() == 1) {
+                return generator.finish(List.of(generator.writeRenderedSiteMap(0, siteMaps.get(0))), 0);
+            }
+            writeRenderedSiteMaps(siteMaps);
+        } else {
+            if (!generator.isAllowMultipleSitemaps())
+                throw new SitemapGeneratorException("More than " + maxUrls + " urls, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
+            IntStream.range(0, (remaining.size() + maxUrls - 1) / maxUrls)
+                    .parallel()
+                    .forEach(i -> writeSiteMaps(remaining.subList(i * maxUrls, Math.min((i + 1) * maxUrls, remaining.size()))));
+        }
+        return generator.finish(new ArrayList<>(outNames.values()), mapCount.get());
+    }
+
+    /**
+     * After you've called {@link #write()}, call this to generate a sitemap index of all sitemaps you generated.
+     * The sitemap index is written to {baseDir}/sitemap_index.xml
+     */
+    public File writeSitemapsWithIndex() {
+        return generator.writeSitemapsWithIndex();
+    }
+
+    /**
+     * After you've called {@link #write()}, call this to generate a sitemap index of all sitemaps you generated.
+     *
+     * @param outFile the destination file of the sitemap index.
+     */
+    public File writeSitemapsWithIndex(File outFile) {
+        return generator.writeSitemapsWithIndex(outFile);
+    }
+
+    private void writeSiteMaps(List<U> urls) {
+        writeRenderedSiteMaps(generator.renderSiteMaps(urls));
+    }
+
+    private void writeRenderedSiteMaps(List<ShardFormat.Rendered> siteMaps) {
+        int first = mapCount.getAndAdd(siteMaps.size()) + 1;
+        for (int i = 0; i < siteMaps.size(); i++) {
+            outNames.put(first + i, generator.writeRenderedSiteMap(first + i, siteMaps.get(i)));
+        }
+    }
+
+    private static class Buffer<U> {
+        /**
+         * Held by the owning thread while it adds a URL, and by write() while it takes the remaining URLs
+         */
+        final ReentrantLock lock = new ReentrantLock();
+        List<U> urls = new ArrayList<>();
+        /**
+         * The emptied list of the last full buffer, only touched by the owning thread
+         */
+        List<U> spare;
+    }
+}
@@ -0,0 +1,81 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.net.URL;
+
+/**
+ * Remembers which URLs have been added, by a 64-bit fingerprint of their text rather than by {@link URL#equals(Object)},
+ * which resolves host names. Two different URLs share a fingerprint with a probability of about n^2/2^65 for n URLs.
+ */
+interface Deduplicator {
+
+    /**
+     * Whether a URL was recorded already
+     */
+    boolean contains(long fingerprint);
+
+    /**
+     * Records a URL; callers record it only once it was added, so a URL that failed to be added can be retried
+     *
+     * @return whether the URL was new
+     */
+    boolean add(long fingerprint);
+
+    /**
+     * A 64-bit hash of the URL as written, e.g. "https://www.example.com/a"
+     */
+    static long fingerprint(ISitemapUrl url) {
+        if (url instanceof RelativeWebSitemapUrl relative) return fingerprint(relative.loc());
+        return fingerprint(url.getUrl().toExternalForm());
+    }
+
+    /**
+     * A 64-bit hash of the characters of a URL
+     */
+    static long fingerprint(CharSequence text) {
+        return finish(hash(0xcbf29ce484222325L, text));
+    }
+
+    /**
+     * The fingerprint of the URL a template gives for an id, the same as of that URL's text, without building it
+     */
+    static long fingerprint(CharSequence prefix, long id, CharSequence suffix) {
+        long hash = hash(0xcbf29ce484222325L, prefix);
+        if (id < 0) {
+            hash = hash(hash, '-');
+        } else {
+            id = -id; // count in negatives, so Long.MIN_VALUE needs no special case
+        }
+        long power = 1;
+        while (id / power <= -10) power *= 10;
+        for (; power > 0; power /= 10) {
+            hash = hash(hash, (char) ('0' - id / power % 10));
+        }
+        return finish(hash(hash, suffix));
+    }
+
+    private static long hash(long hash, CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = hash(hash, text.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * One step of FNV-1a
+     */
+    private static long hash(long hash, char c) {
+        return (hash ^ c) * 0x100000001b3L;
+    }
+
+    /**
+     * Spreads the FNV-1a hash over all 64 bits, as MurmurHash3 finishes
+     */
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,38 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out direct buffers for channel output and takes them back once a sitemap is closed, so writing
+ * thousands of sitemaps neither allocates direct memory per file nor leaves it to the garbage collector.
+ */
+final class DirectBufferPool {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = 64;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private DirectBufferPool() {
+    }
+
+    static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        POOLED.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    static void release(ByteBuffer buffer) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.psloboda.sitemapgenerator.generators;
+
+/**
+ * Writes each full buffer to the sink on the generator's thread, so the buffer can be reused right away
+ */
+final class DirectFlush implements FlushStrategy {
+    private final SitemapFiles files;
+
+    DirectFlush(SitemapFiles files) {
+        this.files = files;
+    }
+
+    @Override
+    public void flush(PendingUrls full) {
+        files.write(full, true);
+    }
+
+    @Override
+    public void finish(PendingUrls rest) {
+        try {
+            files.write(rest, false);
+        } finally {
+            rest.release();
+        }
+    }
+}
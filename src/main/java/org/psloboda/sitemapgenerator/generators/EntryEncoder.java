@@ -0,0 +1,172 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.MalformedInputException;
+
+/**
+ * Encodes rendered entries to UTF-8 straight from the characters they were rendered to. An entry is measured
+ * first, so its exact byte size is known before anything is written, and then encoded right into its
+ * destination: the writer's pooled direct buffers, an off-heap arena chunk, or, for a stream such as the gzip
+ * one, a reusable array. Sitemaps are mostly ASCII, so both passes run through the ASCII part of an entry in one
+ * plain loop; only the rest, if any, goes through multibyte encoding.
+ *
+ * <p>An encoder and its buffers belong to one thread at a time; each thread that writes sitemaps has its own.</p>
+ */
+final class EntryEncoder {
+    private final StringBuilder entry = new StringBuilder();
+    private byte[] bytes = new byte[4096];
+    /**
+     * The entry as the URLs keep it encoded already, or null if it was rendered into {@link #entry}
+     */
+    private ByteBuffer encoded;
+    /**
+     * The length of the prepared entry in bytes
+     */
+    private int length;
+    /**
+     * How many characters of the rendered entry were written so far
+     */
+    private int written;
+
+    /**
+     * Renders the entry at the given index, unless the URLs keep it encoded already, and measures it. The entry is
+     * then written with {@link #writeTo(ByteBuffer)} or {@link #writeTo(OutputStream)}.
+     *
+     * @return the length of the entry in bytes
+     * @throws MalformedInputException if the entry contains an unpaired surrogate
+     */
+    int prepare(PendingUrls urls, int index, W3CDateTimeFormatter dateTimeFormatter) throws CharacterCodingException {
+        written = 0;
+        encoded = urls.encoded(index);
+        if (encoded != null) {
+            length = encoded.remaining();
+        } else {
+            entry.setLength(0);
+            urls.render(index, entry, dateTimeFormatter);
+            length = length(entry);
+        }
+        return length;
+    }
+
+    /**
+     * Writes as much of the prepared entry into the buffer as fits in it, never part of a character
+     *
+     * @return whether the whole entry is written; if not, write the rest into the next buffer
+     */
+    boolean writeTo(ByteBuffer buffer) {
+        if (encoded != null) {
+            int limit = encoded.limit();
+            if (encoded.remaining() > buffer.remaining()) encoded.limit(encoded.position() + buffer.remaining());
+            buffer.put(encoded);
+            encoded.limit(limit);
+            return !encoded.hasRemaining();
+        }
+        written = encode(entry, written, buffer, buffer.position());
+        return written == entry.length();
+    }
+
+    /**
+     * Writes the prepared entry to a stream, through one reusable array
+     */
+    void writeTo(OutputStream out) throws IOException {
+        if (encoded != null && encoded.hasArray()) {
+            out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+            return;
+        }
+        if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+        if (encoded != null) {
+            // an entry kept off-heap
+            encoded.get(bytes, 0, length);
+        } else {
+            encode(entry, 0, ByteBuffer.wrap(bytes), 0);
+        }
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * The number of bytes the characters take as UTF-8
+     *
+     * @throws MalformedInputException if the characters contain an unpaired surrogate
+     */
+    static int length(CharSequence cs) throws MalformedInputException {
+        int length = cs.length();
+        int ascii = 0;
+        while (ascii < length && cs.charAt(ascii) < 0x80) {
+            ascii++;
+        }
+        int bytes = ascii;
+        for (int i = ascii; i < length; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c) || i + 1 == length || !Character.isLowSurrogate(cs.charAt(i + 1))) {
+                    throw new MalformedInputException(1);
+                }
+                i++;
+                bytes += 4;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes characters, which {@link #length(CharSequence)} accepted, into the buffer from the given offset on,
+     * as far as whole characters fit before its limit, and moves the buffer's position past them
+     *
+     * @param from the index of the first character to encode
+     * @return the index of the first character that didn't fit, or the length when all did
+     */
+    static int encode(CharSequence cs, int from, ByteBuffer buffer, int offset) {
+        int length = cs.length();
+        int limit = buffer.limit();
+        int p = offset;
+        int i = from;
+        int asciiEnd = Math.min(length, from + limit - offset);
+        while (i < asciiEnd) {
+            char c = cs.charAt(i);
+            if (c >= 0x80) break;
+            buffer.put(p++, (byte) c);
+            i++;
+        }
+
+        while (i < length) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                if (limit - p < 1) break;
+                buffer.put(p++, (byte) c);
+                i++;
+            } else if (c < 0x800) {
+                if (limit - p < 2) break;
+                buffer.put(p++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(p++, (byte) (0x80 | (c & 0x3f)));
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                if (limit - p < 4) break;
+                int codePoint = Character.toCodePoint(c, cs.charAt(i + 1));
+                buffer.put(p++, (byte) (0xf0 | (codePoint >> 18)));
+                buffer.put(p++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | (codePoint & 0x3f)));
+                i += 2;
+            } else {
+                if (limit - p < 3) break;
+                buffer.put(p++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(p++, (byte) (0x80 | (c & 0x3f)));
+                i++;
+            }
+        }
+        buffer.position(p);
+        return i;
+    }
+}
@@ -0,0 +1,76 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * What a generator does with each full buffer of URLs: write it out right away, hand it to other threads, spill it
+ * to disk or keep it in memory. Called on the generator's thread only.
+ */
+interface FlushStrategy {
+
+    /**
+     * Whether full buffers stay in memory as they are, so the generator keeps adding to the same buffer
+     */
+    default boolean keepsUrls() {
+        return false;
+    }
+
+    /**
+     * Takes one sitemap's worth of URLs
+     */
+    void flush(PendingUrls full);
+
+    /**
+     * Whether flushed URLs may still be read once {@link #flush(PendingUrls)} returns, so a flushed buffer can't
+     * be reused
+     */
+    default boolean handsOff() {
+        return false;
+    }
+
+    /**
+     * Writes out the URLs left over on {@code write()}, once every earlier flush is done
+     */
+    void finish(PendingUrls rest);
+
+    /**
+     * @see SitemapGenerator#getAsyncFlushes()
+     */
+    default List<CompletableFuture<File>> getAsyncFlushes() {
+        return List.of();
+    }
+
+    /**
+     * The number of flushed sitemaps that can be read back as strings, which only spilled ones can
+     */
+    default int spilledCount() {
+        return 0;
+    }
+
+    default String readSpilled(int index) {
+        throw new IndexOutOfBoundsException(index);
+    }
+
+    /**
+     * Deletes the spilled sitemaps once they were read back, after which they can't be read again
+     */
+    default void closeSpilled() {
+    }
+
+    /**
+     * Waits for a future, rethrowing what it failed with as a {@link SitemapGeneratorException}
+     */
+    static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SitemapGeneratorException cause) throw cause;
+            throw new SitemapGeneratorException(e.getCause());
+        }
+    }
+}
@@ -4,48 +4,97 @@ import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
 import org.psloboda.sitemapgenerator.utils.UrlUtils;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 
+import java.net.URL;
+import java.time.temporal.Temporal;
+
 public interface ISitemapUrlRenderer<T extends ISitemapUrl> {
 
     Class<T> getUrlClass();
 
     String getXmlNamespaces();
 
+    /**
+     * Appends the whole {@code <url>} element of the URL to the builder, which the generator reuses from one URL
+     * to the next; render extension elements into it in place rather than building them up separately
+     */
     void render(T url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter);
 
+    /**
+     * Appends the {@code <url>} element of a web URL with extension elements that were rendered beforehand
+     *
+     * @param additionalData extension elements to put after the standard ones, or null for none
+     * @deprecated append extension elements in place between {@link #openUrl} and {@link #closeUrl(StringBuilder)}
+     * instead of building them up as a separate string
+     */
+    @Deprecated
     default void render(WebSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter, String additionalData) {
-        sb.append("  <url>\n");
-        sb.append("    <loc>");
-        sb.append(UrlUtils.escapeXml(url.getUrl().toString()));
-        sb.append("</loc>\n");
-        if (url.getLastMod() != null) {
-            sb.append("    <lastmod>");
-            sb.append(dateTimeFormatter.format(url.getLastMod()));
-            sb.append("</lastmod>\n");
-        }
-        if (url.getChangeFreq() != null) {
-            sb.append("    <changefreq>");
-            sb.append(url.getChangeFreq().toString());
-            sb.append("</changefreq>\n");
-        }
-        if (url.getPriority() != null) {
-            sb.append("    <priority>");
-            sb.append(url.getPriority().toString());
-            sb.append("</priority>\n");
-        }
+        openUrl(url, sb, dateTimeFormatter);
         if (additionalData != null) {
             sb.append(additionalData);
         }
-        sb.append("  </url>\n");
+        closeUrl(sb);
     }
 
+    /**
+     * Appends the opening {@code <url>} tag of a web URL and its standard elements. Extension elements are then
+     * appended to the same builder in place, e.g. with {@link #renderTag}, before {@link #closeUrl(StringBuilder)}
+     * ends the element.
+     */
+    default void openUrl(WebSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        WebUrlMarkup.startUrl(sb);
+        if (url instanceof RelativeWebSitemapUrl relative) {
+            UrlUtils.escapeXml(relative.loc(), sb);
+        } else {
+            UrlUtils.escapeXml(url.getUrl(), sb);
+        }
+        WebUrlMarkup.endLoc(sb, url.getLastMod(), Long.MIN_VALUE, url.getChangeFreq(),
+                url.getPriority() == null ? null : url.getPriority().toString(), dateTimeFormatter);
+    }
+
+    default void closeUrl(StringBuilder sb) {
+        WebUrlMarkup.endUrl(sb);
+    }
+
+    /**
+     * Appends a namespaced element holding the value escaped for XML; nothing if the value is null.
+     * Text and URLs are escaped straight into the builder.
+     */
     default void renderTag(StringBuilder sb, String namespace, String tagName, Object value) {
         if (value == null) return;
+        openTag(sb, namespace, tagName);
+        if (value instanceof URL url) {
+            UrlUtils.escapeXml(url, sb);
+        } else {
+            UrlUtils.escapeXml(value instanceof CharSequence text ? text : value.toString(), sb);
+        }
+        closeTag(sb, namespace, tagName);
+    }
+
+    /**
+     * Appends a namespaced element holding the date formatted straight into the builder; nothing if it is null
+     */
+    default void renderTag(StringBuilder sb, String namespace, String tagName, Temporal value, W3CDateTimeFormatter dateTimeFormatter) {
+        if (value == null) return;
+        openTag(sb, namespace, tagName);
+        dateTimeFormatter.format(value, sb);
+        closeTag(sb, namespace, tagName);
+    }
+
+    default void renderSubTag(StringBuilder sb, String namespace, String tagName, Object value) {
+        if (value == null) return;
+        sb.append("  ");
+        renderTag(sb, namespace, tagName, value);
+    }
+
+    private static void openTag(StringBuilder sb, String namespace, String tagName) {
         sb.append("      <");
         sb.append(namespace);
         sb.append(':');
         sb.append(tagName);
         sb.append('>');
-        sb.append(UrlUtils.escapeXml(value.toString()));
+    }
+
+    private static void closeTag(StringBuilder sb, String namespace, String tagName) {
         sb.append("</");
         sb.append(namespace);
         sb.append(':');
@@ -53,10 +102,4 @@ public interface ISitemapUrlRenderer<T extends ISitemapUrl> {
         sb.append(">\n");
     }
 
-    default void renderSubTag(StringBuilder sb, String namespace, String tagName, Object value) {
-        if (value == null) return;
-        sb.append("  ");
-        renderTag(sb, namespace, tagName, value);
-    }
-
 }
@@ -0,0 +1,80 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * For generators without a base directory or sink: full buffers stay in memory, or are rendered and spilled to a
+ * temporary file with {@link AbstractSitemapGeneratorOptions#spillToDisk(boolean) spillToDisk}, until the sitemaps
+ * are read back as strings
+ */
+final class InMemoryFlush implements FlushStrategy {
+    private final ShardFormat format;
+    private final boolean spillToDisk;
+    private final Path spillDir;
+    private SpillFile spill;
+    private boolean spillClosed = false;
+
+    /**
+     * @param spillDir where to create the spill file, or null for the default temporary directory
+     */
+    InMemoryFlush(ShardFormat format, boolean spillToDisk, Path spillDir) {
+        this.format = format;
+        this.spillToDisk = spillToDisk;
+        this.spillDir = spillDir;
+    }
+
+    @Override
+    public boolean keepsUrls() {
+        return !spillToDisk;
+    }
+
+    @Override
+    public void flush(PendingUrls full) {
+        checkSpillOpen();
+        try {
+            if (spill == null) spill = new SpillFile(spillDir);
+            spill.append(format.renderAsString(full, 0, full.size()));
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem spilling sitemap to disk", e);
+        }
+    }
+
+    @Override
+    public void finish(PendingUrls rest) {
+        throw new NullPointerException("To write to files, baseDir must not be null");
+    }
+
+    @Override
+    public int spilledCount() {
+        checkSpillOpen();
+        return spill == null ? 0 : spill.size();
+    }
+
+    @Override
+    public String readSpilled(int index) {
+        try {
+            return spill.get(index);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem reading spilled sitemap", e);
+        }
+    }
+
+    @Override
+    public void closeSpilled() {
+        if (spill == null || spillClosed) return;
+        spillClosed = true;
+        try {
+            spill.close();
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem deleting spilled sitemaps", e);
+        }
+    }
+
+    private void checkSpillOpen() {
+        if (spillClosed)
+            throw new SitemapGeneratorException("Spilled sitemaps were already read back and deleted");
+    }
+}
@@ -0,0 +1,64 @@
+package org.psloboda.sitemapgenerator.generators;
+
+/**
+ * An exact set of URL fingerprints in one {@code long[]} with open addressing and linear probing,
+ * taking 11 to 21 bytes per URL instead of the 100 or so of a {@code HashSet<String>}
+ */
+final class LongHashSet implements Deduplicator {
+    private static final long EMPTY = 0;
+
+    private long[] slots = new long[1024];
+    private int size = 0;
+    private boolean containsEmpty = false;
+
+    @Override
+    public boolean contains(long fingerprint) {
+        if (fingerprint == EMPTY) return containsEmpty;
+        int mask = slots.length - 1;
+        int i = (int) fingerprint & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == fingerprint) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(long fingerprint) {
+        if (fingerprint == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        if (!insert(slots, fingerprint)) return false;
+        if (++size > slots.length / 4 * 3) grow();
+        return true;
+    }
+
+    int size() {
+        return size + (containsEmpty ? 1 : 0);
+    }
+
+    /**
+     * @return false if the fingerprint was already there
+     */
+    private static boolean insert(long[] slots, long fingerprint) {
+        int mask = slots.length - 1;
+        int i = (int) fingerprint & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == fingerprint) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = fingerprint;
+        return true;
+    }
+
+    private void grow() {
+        if (slots.length == 1 << 30) throw new IllegalStateException("Too many URLs to deduplicate exactly; use a Bloom filter");
+        long[] grown = new long[slots.length * 2];
+        for (long fingerprint : slots) {
+            if (fingerprint != EMPTY) insert(grown, fingerprint);
+        }
+        slots = grown;
+    }
+}
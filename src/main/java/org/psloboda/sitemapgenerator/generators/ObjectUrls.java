@@ -0,0 +1,73 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pending URLs kept as the URL objects, each rendered by the generator's renderer when it is written
+ *
+ * @param <U> the type of URL the renderer renders
+ */
+final class ObjectUrls<U extends ISitemapUrl> implements UrlBuffer<U> {
+    private final ISitemapUrlRenderer<U> renderer;
+    private final List<ISitemapUrl> urls;
+
+    ObjectUrls(ISitemapUrlRenderer<U> renderer) {
+        this(renderer, new ArrayList<>());
+    }
+
+    /**
+     * A read-only view of the given URLs, which aren't copied
+     */
+    ObjectUrls(ISitemapUrlRenderer<U> renderer, List<ISitemapUrl> urls) {
+        this.renderer = renderer;
+        this.urls = urls;
+    }
+
+    @Override
+    public int size() {
+        return urls.size();
+    }
+
+    @Override
+    public void add(U url) {
+        urls.add(url);
+    }
+
+    @Override
+    public void addWebUrl(WebSitemapUrl url) {
+        urls.add(url);
+    }
+
+    @Override
+    public void render(int index, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        render(renderer, urls.get(index), sb, dateTimeFormatter);
+    }
+
+    @Override
+    public CharSequence loc(int index) {
+        return urls.get(index).getUrl().toString();
+    }
+
+    @Override
+    public void clear() {
+        urls.clear();
+    }
+
+    /**
+     * Renders a URL of the renderer's type with the renderer, and a plain web URL held by a sitemap of another
+     * type with just its standard elements
+     */
+    static <U extends ISitemapUrl> void render(ISitemapUrlRenderer<U> renderer, ISitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        Class<U> type = renderer.getUrlClass();
+        if (type.isInstance(url)) {
+            renderer.render(type.cast(url), sb, dateTimeFormatter);
+        } else {
+            renderer.openUrl((WebSitemapUrl) url, sb, dateTimeFormatter);
+            renderer.closeUrl(sb);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * The arena chunks of one generator's {@link OffHeapUrls}. A buffer hands its chunks back here once its sitemap
+ * is written, on whichever thread wrote it, and the generator's next buffers take them again, so a generator only
+ * allocates direct memory until it holds as many chunks as its pending sitemaps need at once, however many
+ * sitemaps it writes. Chunks of entries larger than {@link DirectBufferPool#BUFFER_SIZE} are kept as well and
+ * reused for any entry that fits in them.
+ *
+ * <p>{@link #close()} gives the standard chunks back to {@link DirectBufferPool} once the generator is done.</p>
+ */
+final class OffHeapArena {
+    static final int CHUNK_SIZE = DirectBufferPool.BUFFER_SIZE;
+
+    private final ConcurrentLinkedDeque<ByteBuffer> spare = new ConcurrentLinkedDeque<>();
+    /**
+     * Spare oversized chunks by capacity; guarded by itself
+     */
+    private final TreeMap<Integer, ArrayDeque<ByteBuffer>> spareLarge = new TreeMap<>();
+
+    /**
+     * A chunk of {@link #CHUNK_SIZE} bytes
+     */
+    ByteBuffer acquire() {
+        ByteBuffer chunk = spare.pollFirst();
+        if (chunk == null) return DirectBufferPool.acquire();
+        chunk.clear();
+        return chunk;
+    }
+
+    /**
+     * A chunk of at least the given size, larger than {@link #CHUNK_SIZE}. New ones are rounded up to a power of
+     * two, so entries of similar sizes share them.
+     */
+    ByteBuffer acquireLarge(int length) {
+        synchronized (spareLarge) {
+            Map.Entry<Integer, ArrayDeque<ByteBuffer>> fitting = spareLarge.ceilingEntry(length);
+            if (fitting != null) {
+                ByteBuffer chunk = fitting.getValue().pop();
+                if (fitting.getValue().isEmpty()) spareLarge.remove(fitting.getKey());
+                chunk.clear();
+                return chunk;
+            }
+        }
+        int capacity = Integer.highestOneBit(length - 1) << 1;
+        return ByteBuffer.allocateDirect(capacity > 0 ? capacity : length);
+    }
+
+    /**
+     * Takes a chunk back for the next buffer; safe to call from any thread
+     */
+    void release(ByteBuffer chunk) {
+        if (chunk.capacity() == CHUNK_SIZE) {
+            spare.offerFirst(chunk);
+            return;
+        }
+        synchronized (spareLarge) {
+            spareLarge.computeIfAbsent(chunk.capacity(), capacity -> new ArrayDeque<>()).push(chunk);
+        }
+    }
+
+    /**
+     * Hands the standard chunks on to {@link DirectBufferPool} and forgets the oversized ones; call it once no
+     * buffer of the generator will be used again
+     */
+    void close() {
+        ByteBuffer chunk;
+        while ((chunk = spare.pollFirst()) != null) {
+            DirectBufferPool.release(chunk);
+        }
+        synchronized (spareLarge) {
+            spareLarge.clear();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The pending URLs of a sitemap, rendered and encoded as they are added and kept as UTF-8 in direct buffers
+ * outside the heap. All that stays on the heap is where each entry starts and how long it is, two primitive
+ * arrays the collector never has to trace, so GC pauses don't grow with the number of pending URLs.
+ *
+ * <p>Entries are written out as the bytes they were encoded to. The arena chunks come from the generator's
+ * {@link OffHeapArena}; {@link #clear()} and {@link #release()} hand them back there for the next sitemap. The URL
+ * objects themselves aren't kept.</p>
+ *
+ * @param <U> the type of URL the renderer renders
+ */
+final class OffHeapUrls<U extends ISitemapUrl> implements UrlBuffer<U> {
+    private final OffHeapArena arena;
+    private final ISitemapUrlRenderer<U> renderer;
+    private final W3CDateTimeFormatter dateTimeFormatter;
+    private final StringBuilder entry = new StringBuilder();
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int chunkCount = 0;
+    /**
+     * The offset in the last chunk to append the next entry at
+     */
+    private int position = 0;
+    /**
+     * The chunk index of each entry in the high 32 bits, its offset in the low ones
+     */
+    private long[] starts = new long[256];
+    private int[] lengths = new int[256];
+    private int size = 0;
+
+    OffHeapUrls(OffHeapArena arena, ISitemapUrlRenderer<U> renderer, W3CDateTimeFormatter dateTimeFormatter) {
+        this.arena = arena;
+        this.renderer = renderer;
+        this.dateTimeFormatter = dateTimeFormatter;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Renders and encodes the URL into the arena; the URL itself isn't kept
+     *
+     * @throws SitemapGeneratorException if the URL can't be encoded, e.g. because it holds an unpaired surrogate
+     */
+    @Override
+    public void add(U url) {
+        append(url);
+    }
+
+    /**
+     * Renders and encodes the web URL into the arena like {@link #add(ISitemapUrl)}
+     */
+    @Override
+    public void addWebUrl(WebSitemapUrl url) {
+        append(url);
+    }
+
+    private void append(ISitemapUrl url) {
+        entry.setLength(0);
+        ObjectUrls.render(renderer, url, entry, dateTimeFormatter);
+        int length;
+        try {
+            length = EntryEncoder.length(entry);
+        } catch (CharacterCodingException e) {
+            throw new SitemapGeneratorException("Problem encoding URL " + url.getUrl(), e);
+        }
+        if (chunkCount == 0 || chunks[chunkCount - 1].capacity() - position < length) nextChunk(length);
+        int current = chunkCount - 1;
+        EntryEncoder.encode(entry, 0, chunks[current], position);
+
+        if (size == lengths.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        starts[size] = (long) current << 32 | position;
+        lengths[size] = length;
+        position += length;
+        size++;
+    }
+
+    /**
+     * Moves on to a new chunk from the arena; an entry that is larger than a standard chunk gets a larger one
+     */
+    private void nextChunk(int length) {
+        if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        chunks[chunkCount++] = length > OffHeapArena.CHUNK_SIZE ? arena.acquireLarge(length) : arena.acquire();
+        position = 0;
+    }
+
+    /**
+     * The encoded {@code <url>} element of the entry at the given index, as a view of the arena that is only valid
+     * until the buffer is cleared or released
+     */
+    @Override
+    public ByteBuffer encoded(int index) {
+        return chunks[(int) (starts[index] >>> 32)].slice((int) starts[index], lengths[index]);
+    }
+
+    /**
+     * Decodes the entry back into characters; safe to call from several threads at once
+     */
+    @Override
+    public void render(int index, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        ByteBuffer chunk = chunks[(int) (starts[index] >>> 32)];
+        int offset = (int) starts[index];
+        int end = offset + lengths[index];
+        for (int i = offset; i < end; i++) {
+            byte b = chunk.get(i);
+            if (b < 0) {
+                sb.append(StandardCharsets.UTF_8.decode(chunk.slice(i, end - i)));
+                return;
+            }
+            sb.append((char) b);
+        }
+    }
+
+    /**
+     * The contents of the entry's {@code <loc>} element, as escaped for XML
+     */
+    @Override
+    public CharSequence loc(int index) {
+        StringBuilder sb = new StringBuilder();
+        render(index, sb, dateTimeFormatter);
+        int start = sb.indexOf("<loc>") + "<loc>".length();
+        return sb.substring(start, sb.indexOf("</loc>", start));
+    }
+
+    /**
+     * Forgets the entries and hands the chunks back to the arena, which gives them out again for the next ones
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < chunkCount; i++) {
+            arena.release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        size = 0;
+        position = 0;
+    }
+
+    /**
+     * Forgets the entries and hands the chunks back to the arena, possibly on another thread than the one that
+     * added them
+     */
+    @Override
+    public void release() {
+        clear();
+    }
+}
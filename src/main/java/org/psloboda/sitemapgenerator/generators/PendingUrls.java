@@ -0,0 +1,41 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * URLs waiting to be written as sitemaps, rendered by index without building a URL object for each: a
+ * generator's buffer, or a run of ids from a template
+ */
+interface PendingUrls {
+
+    int size();
+
+    /**
+     * Appends the {@code <url>} element of the entry at the given index
+     */
+    void render(int index, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter);
+
+    /**
+     * The URL of the entry at the given index, e.g. for an error message
+     */
+    CharSequence loc(int index);
+
+    /**
+     * The {@code <url>} element of the entry at the given index already encoded to UTF-8, as a view that is only
+     * valid until the URLs change
+     *
+     * @return null if the entry has to be rendered
+     */
+    default ByteBuffer encoded(int index) {
+        return null;
+    }
+
+    /**
+     * Hands back what the URLs are kept in once they won't be read again; by default that is left to the garbage
+     * collector
+     */
+    default void release() {
+    }
+}
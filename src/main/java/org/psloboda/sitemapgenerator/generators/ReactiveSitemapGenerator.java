@@ -0,0 +1,176 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Feeds a generator from a reactive stream without blocking the threads the URLs arrive on.
+ *
+ * <p>As a {@link Flow.Subscriber} it requests a bounded number of URLs at a time and adds them to the wrapped
+ * generator on an executor, requesting more as it catches up; when the upstream completes, it writes out the
+ * remaining sitemaps. As a {@link Flow.Publisher} it emits a {@link SitemapShard} for every sitemap file once it
+ * is finished, and completes after the last one. A slow shard subscriber holds up the generator, which in turn
+ * stops requesting URLs, so nothing is buffered without limit.</p>
+ *
+ * <pre>
+ * ReactiveSitemapGenerator&lt;WebSitemapUrl&gt; g = new ReactiveSitemapGenerator&lt;&gt;(
+ *         WebSitemapGenerator.builder("http://example.com", myDir).build());
+ * g.subscribe(uploader);
+ * urlPublisher.subscribe(g);
+ * </pre>
+ *
+ * Subscribe to the shards before subscribing to the URLs, or the first shards may be missed. Once the shards
+ * have completed, the wrapped generator can write a sitemap index. If the upstream fails, or the generator
+ * does, the upstream is cancelled and the shard subscribers get the error.
+ *
+ * @param <U> the type of URL the wrapped generator accepts
+ */
+public class ReactiveSitemapGenerator<U extends ISitemapUrl> implements Flow.Processor<U, SitemapShard> {
+    private final SitemapGenerator<U, ?> generator;
+    private final Executor executor;
+    private final int bufferSize;
+    private final SubmissionPublisher<SitemapShard> shards;
+    private final Queue<U> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean done = false;
+    private volatile Throwable upstreamError;
+    private boolean stopped = false;
+
+    /**
+     * Adds URLs on the common fork/join pool, with {@link Flow#defaultBufferSize()} URLs requested at a time
+     */
+    public ReactiveSitemapGenerator(SitemapGenerator<U, ?> generator) {
+        this(generator, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Wraps a generator that nothing has been added to yet; don't use the generator directly afterwards,
+     * except to write a sitemap index.
+     *
+     * @param executor   adds the URLs, writes the sitemaps and delivers the shards; it needs more than one thread,
+     *                   since writing waits for slow shard subscribers
+     * @param bufferSize the most URLs requested but not yet added, and the most shards buffered per subscriber
+     */
+    public ReactiveSitemapGenerator(SitemapGenerator<U, ?> generator, Executor executor, int bufferSize) {
+        if (!generator.isUnused())
+            throw new SitemapGeneratorException("The generator has already been used; wrap a new one");
+        if (executor == null) throw new NullPointerException("executor may not be null");
+        if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        this.generator = generator;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.shards = new SubmissionPublisher<>(executor, bufferSize);
+        generator.onShard(shards::submit);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super SitemapShard> subscriber) {
+        shards.subscribe(subscriber);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(U url) {
+        if (url == null) throw new NullPointerException("url may not be null");
+        queue.offer(url);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (error == null) throw new NullPointerException("error may not be null");
+        upstreamError = error;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * Runs {@link #addQueued()} on the executor, at most once at a time, and again if more work arrived meanwhile
+     */
+    private void drain() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::addQueued);
+        }
+    }
+
+    private void addQueued() {
+        int missed = 1;
+        int added = 0;
+        do {
+            while (true) {
+                if (stopped) {
+                    queue.clear();
+                    break;
+                }
+                boolean finished = done;
+                U url = queue.poll();
+                if (url == null) {
+                    if (finished) finish();
+                    break;
+                }
+                try {
+                    generator.addUrl(url);
+                } catch (Throwable e) {
+                    fail(e);
+                    break;
+                }
+                // ask for more once half of the requested URLs have been added
+                if (++added >= (bufferSize + 1) / 2) {
+                    subscription.request(added);
+                    added = 0;
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+        if (added > 0 && !stopped) subscription.request(added);
+    }
+
+    private void finish() {
+        stopped = true;
+        Throwable error = upstreamError;
+        if (error != null) {
+            queue.clear();
+            shards.closeExceptionally(error);
+            return;
+        }
+        try {
+            generator.write();
+        } catch (Throwable e) {
+            shards.closeExceptionally(e);
+            return;
+        }
+        shards.close();
+    }
+
+    private void fail(Throwable error) {
+        stopped = true;
+        queue.clear();
+        subscription.cancel();
+        shards.closeExceptionally(error);
+    }
+}
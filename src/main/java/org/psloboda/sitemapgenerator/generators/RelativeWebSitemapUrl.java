@@ -0,0 +1,47 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A plain web sitemap URL that was added as a string under the generator's base URL. Only the ASCII path after
+ * the base's scheme and authority is kept; the {@link URL} is only built when somebody asks for it.
+ */
+final class RelativeWebSitemapUrl extends WebSitemapUrl {
+    private final BaseUrl base;
+    private final byte[] path;
+
+    RelativeWebSitemapUrl(BaseUrl base, byte[] path) {
+        this.base = base;
+        this.path = path;
+    }
+
+    /**
+     * Whether this URL was checked against the given base already
+     */
+    boolean isUnder(BaseUrl base) {
+        return this.base == base;
+    }
+
+    /**
+     * The URL as it was added, without copying it
+     */
+    CharSequence loc() {
+        return new AsciiLoc(base.origin, path, 0, path.length);
+    }
+
+    /**
+     * The ASCII characters after the base's scheme and authority
+     */
+    byte[] path() {
+        return path;
+    }
+
+    @Override
+    public URL getUrl() {
+        return UrlUtils.toUrl(base.origin + new String(path, StandardCharsets.US_ASCII));
+    }
+}
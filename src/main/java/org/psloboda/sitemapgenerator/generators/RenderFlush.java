@@ -0,0 +1,87 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.generators.ShardFormat.Rendered;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hands each full buffer to a render executor, which renders and compresses it into sitemap files in memory.
+ * Finished sitemaps are written out on the generator's thread in submission order, so file numbering is the same
+ * as in a sequential run; the producer only waits once more renders are pending than the executor can run at a
+ * time.
+ */
+final class RenderFlush implements FlushStrategy {
+    private final SitemapFiles files;
+    private final ShardFormat format;
+    private final Executor executor;
+    private final int maxPending;
+    private final ArrayDeque<CompletableFuture<List<Rendered>>> pending = new ArrayDeque<>();
+
+    RenderFlush(SitemapFiles files, ShardFormat format, Executor executor) {
+        this.files = files;
+        this.format = format;
+        this.executor = executor;
+        if (executor instanceof ForkJoinPool pool) {
+            maxPending = pool.getParallelism();
+        } else {
+            maxPending = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Override
+    public void flush(PendingUrls full) {
+        pending.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                return format.render(full);
+            } finally {
+                full.release();
+            }
+        }, executor));
+        writeRendered(false);
+    }
+
+    @Override
+    public boolean handsOff() {
+        return true;
+    }
+
+    /**
+     * Renders the rest like a full buffer once anything was, so it is numbered after the rest; otherwise writes it
+     * out directly as the one sitemap
+     */
+    @Override
+    public void finish(PendingUrls rest) {
+        if (pending.isEmpty() && files.isUnused()) {
+            try {
+                files.write(rest, false);
+            } finally {
+                rest.release();
+            }
+            return;
+        }
+        if (rest.size() > 0) {
+            flush(rest);
+        } else {
+            rest.release();
+        }
+        writeRendered(true);
+    }
+
+    /**
+     * Writes rendered sitemaps to the sink in the order they were submitted
+     *
+     * @param all wait for every pending render; otherwise only take the ones that are done, or are holding up the
+     *            producer
+     */
+    private void writeRendered(boolean all) {
+        while (!pending.isEmpty() && (all || pending.peek().isDone() || pending.size() > maxPending)) {
+            for (Rendered siteMap : FlushStrategy.join(pending.poll())) {
+                files.writeRendered(files.nextName(), siteMap);
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * How a generator lays out its sitemap files: the header and footer, the encoding, and the limits that decide where
+ * one file ends and the next begins. Holds no state of its own, so URLs may be rendered with it on any thread, each
+ * with its own {@link EntryEncoder}.
+ */
+final class ShardFormat {
+    private static final String FOOTER = "</urlset>";
+    private static final byte[] FOOTER_BYTES = FOOTER.getBytes(StandardCharsets.UTF_8);
+
+    private final W3CDateTimeFormatter dateTimeFormatter;
+    private final String header;
+    private final byte[] headerBytes;
+    private final int maxUrls;
+    private final long maxFileSize;
+    private final boolean allowMultipleSitemaps;
+    private final boolean gzip;
+    private final Executor gzipExecutor;
+
+    /**
+     * @param xmlNamespaces the renderer's namespace declarations, or null for none
+     */
+    ShardFormat(String xmlNamespaces, W3CDateTimeFormatter dateTimeFormatter, int maxUrls, long maxFileSize,
+                boolean allowMultipleSitemaps, boolean gzip, Executor gzipExecutor) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<urlset xmlns=\"https://www.sitemaps.org/schemas/sitemap/0.9\" ");
+        if (xmlNamespaces != null) {
+            sb.append(xmlNamespaces);
+            sb.append(' ');
+        }
+        sb.append(">\n");
+        this.header = sb.toString();
+        this.headerBytes = header.getBytes(StandardCharsets.UTF_8);
+        this.dateTimeFormatter = dateTimeFormatter;
+        this.maxUrls = maxUrls;
+        this.maxFileSize = maxFileSize;
+        this.allowMultipleSitemaps = allowMultipleSitemaps;
+        this.gzip = gzip;
+        this.gzipExecutor = gzipExecutor;
+    }
+
+    /**
+     * Starts a sitemap file on the channel by writing the header
+     */
+    ShardWriter open(WritableByteChannel channel, String name) throws IOException {
+        if (!gzip) {
+            return new ShardWriter(channel, name, headerBytes, FOOTER_BYTES.length);
+        }
+        return new ShardWriter(Channels.newOutputStream(channel), name, true, gzipExecutor, headerBytes, FOOTER_BYTES.length);
+    }
+
+    /**
+     * Ends a sitemap file with the footer and closes it
+     */
+    void close(ShardWriter out) throws IOException {
+        try (out) {
+            out.write(FOOTER_BYTES);
+        }
+    }
+
+    /**
+     * Renders and measures the entry at the given index with the caller's encoder
+     *
+     * @return its length in bytes
+     */
+    int prepare(PendingUrls urls, int index, EntryEncoder encoder) throws CharacterCodingException {
+        return encoder.prepare(urls, index, dateTimeFormatter);
+    }
+
+    /**
+     * Whether the prepared entry has to go into a new sitemap file because the given one already holds
+     * {@link #maxUrls} URLs, or the entry would push it past {@link #maxFileSize} bytes
+     *
+     * @throws SitemapGeneratorException if the entry doesn't fit even in an empty file, or a new file is needed
+     *                                   but only one sitemap is allowed
+     */
+    boolean isFull(ShardWriter out, int length, PendingUrls urls, int index) {
+        if (out.getUrlCount() < maxUrls && out.fits(length, maxFileSize)) {
+            return false;
+        }
+        if (out.getUrlCount() == 0)
+            throw new SitemapGeneratorException("URL " + urls.loc(index) + " needs " + length + " bytes, which doesn't fit in a sitemap of at most " + maxFileSize + " bytes");
+        if (!allowMultipleSitemaps)
+            throw new SitemapGeneratorException("More than " + out.getUrlCount() + " urls or " + maxFileSize + " bytes, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
+        return true;
+    }
+
+    /**
+     * Renders and compresses URLs into complete sitemap files in memory, splitting them exactly where writing them
+     * to the sink would. Only touches its own buffers, so it may run on any thread.
+     */
+    List<Rendered> render(PendingUrls urls) {
+        EntryEncoder encoder = new EntryEncoder();
+        List<Rendered> siteMaps = new ArrayList<>();
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            ShardWriter out = new ShardWriter(content, null, gzip, gzipExecutor, headerBytes, FOOTER_BYTES.length);
+            for (int i = 0; i < urls.size(); i++) {
+                int length = prepare(urls, i, encoder);
+                if (isFull(out, length, urls, i)) {
+                    close(out);
+                    siteMaps.add(new Rendered(content.toByteArray(), out.getUrlCount(), out.getByteCount()));
+                    content = new ByteArrayOutputStream();
+                    out = new ShardWriter(content, null, gzip, gzipExecutor, headerBytes, FOOTER_BYTES.length);
+                }
+                out.writeUrl(encoder, length);
+            }
+            close(out);
+            siteMaps.add(new Rendered(content.toByteArray(), out.getUrlCount(), out.getByteCount()));
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem rendering sitemap", e);
+        }
+        return siteMaps;
+    }
+
+    /**
+     * Renders some of the URLs as one uncompressed sitemap, without any limits
+     */
+    String renderAsString(PendingUrls urls, int from, int to) {
+        StringBuilder sb = new StringBuilder(header);
+        for (int i = from; i < to; i++) {
+            urls.render(i, sb, dateTimeFormatter);
+        }
+        sb.append(FOOTER);
+        return sb.toString();
+    }
+
+    /**
+     * A sitemap rendered in memory, ready to be written
+     *
+     * @param byteCount the uncompressed size
+     */
+    record Rendered(byte[] content, int urlCount, long byteCount) {
+    }
+}
@@ -0,0 +1,204 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.utils.ParallelGZIPOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a single sitemap file one encoded entry at a time, so a shard never has to be held in memory as a whole.
+ * Keeps an exact count of the uncompressed bytes written, which is what the sitemap size limit applies to.
+ *
+ * <p>Uncompressed sitemaps are written straight to a channel: entries are encoded right into pooled direct
+ * buffers, which go out a few at a time with one gathering write, so the bytes are not copied again on their way
+ * to the file. Compressed sitemaps go through a stream, since the deflater works on byte arrays.</p>
+ */
+final class ShardWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS_PER_WRITE = 4;
+
+    private final String name;
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final ByteBuffer[] buffers;
+    private int current = 0;
+    private boolean closed = false;
+    private final int footerLength;
+    private long byteCount = 0;
+    private int urlCount = 0;
+
+    /**
+     * @param stream       the destination; closed along with this writer
+     * @param name         the file name of the sitemap
+     * @param gzipExecutor compresses blocks in parallel when set, otherwise gzip runs on the calling thread
+     */
+    ShardWriter(OutputStream stream, String name, boolean gzip, Executor gzipExecutor, byte[] header, int footerLength) throws IOException {
+        this.name = name;
+        this.footerLength = footerLength;
+        this.channel = null;
+        this.buffers = null;
+        try {
+            if (gzip && gzipExecutor != null) {
+                this.out = new ParallelGZIPOutputStream(stream, gzipExecutor);
+            } else if (gzip) {
+                this.out = new GZIPOutputStream(stream, BUFFER_SIZE);
+            } else {
+                this.out = new BufferedOutputStream(stream, BUFFER_SIZE);
+            }
+            write(header);
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes an uncompressed sitemap through pooled direct buffers
+     *
+     * @param channel the destination; closed along with this writer
+     * @param name    the file name of the sitemap
+     */
+    ShardWriter(WritableByteChannel channel, String name, byte[] header, int footerLength) throws IOException {
+        this.name = name;
+        this.footerLength = footerLength;
+        this.out = null;
+        this.channel = channel;
+        this.buffers = new ByteBuffer[BUFFERS_PER_WRITE];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = DirectBufferPool.acquire();
+        }
+        try {
+            write(header);
+        } catch (IOException e) {
+            release();
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether an entry of the given encoded length still fits, leaving room for the closing tag
+     */
+    boolean fits(int length, long maxBytes) {
+        return byteCount + length + footerLength <= maxBytes;
+    }
+
+    /**
+     * Writes the {@code <url>} element the encoder has prepared
+     *
+     * @param length its length in bytes, as {@link EntryEncoder#prepare} measured it
+     */
+    void writeUrl(EntryEncoder entry, int length) throws IOException {
+        if (out != null) {
+            entry.writeTo(out);
+        } else {
+            while (!entry.writeTo(buffers[current])) {
+                nextBuffer();
+            }
+            if (!buffers[current].hasRemaining()) nextBuffer();
+        }
+        byteCount += length;
+        urlCount++;
+    }
+
+    /**
+     * Writes header or footer markup
+     */
+    void write(byte[] markup) throws IOException {
+        if (out != null) {
+            out.write(markup);
+        } else {
+            put(ByteBuffer.wrap(markup));
+        }
+        byteCount += markup.length;
+    }
+
+    int getUrlCount() {
+        return urlCount;
+    }
+
+    long getByteCount() {
+        return byteCount;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            return;
+        }
+        if (closed) return;
+        closed = true;
+        try (channel) {
+            drain();
+        } finally {
+            release();
+        }
+    }
+
+    private void put(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            ByteBuffer buffer = buffers[current];
+            if (bytes.remaining() <= buffer.remaining()) {
+                buffer.put(bytes);
+            } else {
+                int limit = bytes.limit();
+                bytes.limit(bytes.position() + buffer.remaining());
+                buffer.put(bytes);
+                bytes.limit(limit);
+            }
+            if (!buffer.hasRemaining()) nextBuffer();
+        }
+    }
+
+    /**
+     * Moves on to the next buffer once the current one is full, or has no room for the next character; writes
+     * them all out when there is none left
+     */
+    private void nextBuffer() throws IOException {
+        if (++current == buffers.length) drain();
+    }
+
+    /**
+     * Writes out every filled buffer, in one call when the channel supports gathering writes
+     */
+    private void drain() throws IOException {
+        int count = Math.min(current + 1, buffers.length);
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            remaining += buffers[i].flip().remaining();
+        }
+        if (channel instanceof GatheringByteChannel gathering) {
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers, 0, count);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers[i]);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            buffers[i].clear();
+        }
+        current = 0;
+    }
+
+    private void release() {
+        for (ByteBuffer buffer : buffers) {
+            DirectBufferPool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.ShardFormat.Rendered;
+import org.psloboda.sitemapgenerator.generators.index.SitemapIndexGenerator;
+import org.psloboda.sitemapgenerator.sinks.IncrementalSitemapSink;
+import org.psloboda.sitemapgenerator.sinks.SitemapSink;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes a generator's sitemaps to its sink and keeps track of their names. The first sitemap is unnumbered, e.g.
+ * "sitemap.xml", until a second one is needed, when it is renamed to "sitemap1.xml"; a full buffer always goes
+ * into numbered files.
+ *
+ * <p>Names are handed out, and URLs written, on the generator's thread only. Sitemaps that were rendered
+ * elsewhere may be written under a name they were already given from any thread.</p>
+ */
+final class SitemapFiles {
+    private final SitemapSink sink;
+    private final String fileNamePrefix;
+    private final String fileNameSuffix;
+    private final boolean allowEmptySitemap;
+    private final boolean autoValidate;
+    private final ShardFormat format;
+    private final EntryEncoder encoder = new EntryEncoder();
+    private final List<String> names = new ArrayList<>();
+    /**
+     * The number of the last numbered sitemap, or 0 while there is none
+     */
+    private int count = 0;
+    private ShardWriter stream;
+    private volatile Consumer<SitemapShard> listener;
+    private SitemapShard unnumbered;
+
+    /**
+     * @param sink may be null for a generator that keeps its sitemaps in memory; writing then fails
+     */
+    SitemapFiles(SitemapSink sink, String fileNamePrefix, String fileNameSuffix, boolean allowEmptySitemap,
+                 boolean autoValidate, ShardFormat format) {
+        this.sink = sink;
+        this.fileNamePrefix = fileNamePrefix;
+        this.fileNameSuffix = fileNameSuffix;
+        this.allowEmptySitemap = allowEmptySitemap;
+        this.autoValidate = autoValidate;
+        this.format = format;
+    }
+
+    /**
+     * Writes URLs out as one sitemap file, or as several if they don't fit in one
+     *
+     * @param full whether they are a full buffer, which always goes into numbered files; the rest of the URLs only
+     *             does once there are numbered files, and is left out then if there is none of it
+     */
+    void write(PendingUrls urls, boolean full) {
+        checkSink();
+        if (urls.size() == 0 && (count > 0 || !allowEmptySitemap)) {
+            return;
+        }
+
+        ShardWriter out = open(full || count > 0 ? ++count : 0);
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                out = writeUrl(out, urls, i);
+            }
+        } catch (IOException e) {
+            closeAfterFailure(out, e);
+            throw new SitemapGeneratorException("Problem writing sitemap file " + out.getName(), e);
+        } catch (RuntimeException e) {
+            closeAfterFailure(out, e);
+            throw e;
+        }
+        close(out);
+    }
+
+    /**
+     * Writes one URL straight into the open sitemap file instead of buffering it
+     */
+    void stream(PendingUrls urls, int index) {
+        if (stream == null) stream = open(0);
+        try {
+            stream = writeUrl(stream, urls, index);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem writing sitemap file " + stream.getName(), e);
+        }
+    }
+
+    /**
+     * Closes the file that URLs were streamed into, opening it first if none were
+     */
+    void closeStream() {
+        checkSink();
+        if (stream == null) stream = open(0);
+        close(stream);
+        stream = null;
+    }
+
+    /**
+     * Renders and encodes one URL, then writes it to the given sitemap file. If it doesn't fit there, the file is
+     * closed and the URL goes into a new one; the entry is never rendered twice.
+     *
+     * @return the sitemap file the URL was written to
+     */
+    private ShardWriter writeUrl(ShardWriter out, PendingUrls urls, int index) throws IOException {
+        int length = format.prepare(urls, index, encoder);
+        if (format.isFull(out, length, urls, index)) out = rollOver(out);
+        out.writeUrl(encoder, length);
+        return out;
+    }
+
+    /**
+     * Closes a full sitemap file and opens the next one.
+     * The first file is renamed to a numbered one as soon as a second file is needed.
+     */
+    private ShardWriter rollOver(ShardWriter out) throws IOException {
+        close(out);
+        if (count == 0) renumberFirst();
+        return open(++count);
+    }
+
+    private ShardWriter open(int number) {
+        String name = name(number);
+        names.add(name);
+        try {
+            return format.open(sink.open(name), name);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem writing sitemap file " + name, e);
+        }
+    }
+
+    private void close(ShardWriter out) {
+        try {
+            format.close(out);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem writing sitemap file " + out.getName(), e);
+        }
+        validate(out.getName());
+        if (listener == null) return;
+        SitemapShard shard = new SitemapShard(out.getName(), sink.getPath(out.getName()), out.getUrlCount(), out.getByteCount());
+        if (count == 0) {
+            // may still be renamed to "sitemap1"
+            unnumbered = shard;
+        } else {
+            publish(shard);
+        }
+    }
+
+    private static void closeAfterFailure(ShardWriter out, Exception failure) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void renumberFirst() throws IOException {
+        String renamed = name(1);
+        sink.rename(names.get(0), renamed);
+        names.set(0, renamed);
+        count = 1;
+        if (unnumbered != null) {
+            publish(new SitemapShard(renamed, sink.getPath(renamed), unnumbered.urlCount(), unnumbered.byteCount()));
+            unnumbered = null;
+        }
+    }
+
+    /**
+     * Hands out the name of the next numbered sitemap, for one that is rendered elsewhere
+     */
+    String nextName() {
+        String name = name(++count);
+        names.add(name);
+        return name;
+    }
+
+    /**
+     * Writes one rendered sitemap to the sink; safe to call from any thread
+     *
+     * @param number the number in the file name, or 0 for an unnumbered sitemap
+     * @return the file name of the sitemap
+     */
+    String writeRendered(int number, Rendered siteMap) {
+        String name = name(number);
+        writeRendered(name, siteMap);
+        return name;
+    }
+
+    /**
+     * Writes one rendered sitemap to the sink under a name it was given; safe to call from any thread
+     */
+    void writeRendered(String name, Rendered siteMap) {
+        checkSink();
+        try {
+            try (WritableByteChannel out = sink.open(name)) {
+                ByteBuffer bytes = ByteBuffer.wrap(siteMap.content());
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+            }
+            validate(name);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem writing sitemap file " + name, e);
+        }
+        publish(new SitemapShard(name, sink.getPath(name), siteMap.urlCount(), siteMap.byteCount()));
+    }
+
+    private String name(int number) {
+        return (number > 0 ? fileNamePrefix + number : fileNamePrefix) + fileNameSuffix;
+    }
+
+    private void checkSink() {
+        if (sink == null) {
+            throw new NullPointerException("To write to files, baseDir must not be null");
+        }
+    }
+
+    private void validate(String name) {
+        Path path = sink.getPath(name);
+        if (!autoValidate || path == null) return;
+        try {
+            SitemapValidator.validateWebSitemap(path);
+        } catch (SAXException e) {
+            throw new SitemapGeneratorException("Sitemap file failed to validate (bug?)", e);
+        }
+    }
+
+    /**
+     * Reports each sitemap once it is finished and its name is final, on the thread that finished it
+     */
+    void onShard(Consumer<SitemapShard> listener) {
+        this.listener = listener;
+    }
+
+    private void publish(SitemapShard shard) {
+        Consumer<SitemapShard> listener = this.listener;
+        if (listener != null) listener.accept(shard);
+    }
+
+    /**
+     * Whether no sitemap has been named yet
+     */
+    boolean isUnused() {
+        return names.isEmpty();
+    }
+
+    /**
+     * Once every sitemap is written, reports the unnumbered one and commits the sink
+     *
+     * @return the files to report from {@code write()}: all of them, or only the changed ones in incremental mode
+     */
+    List<File> commit() {
+        if (unnumbered != null) {
+            publish(unnumbered);
+            unnumbered = null;
+        }
+        if (!(sink instanceof IncrementalSitemapSink incremental)) return toFiles(names);
+        try {
+            return toFiles(incremental.commit(names));
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem writing sitemap manifest", e);
+        }
+    }
+
+    /**
+     * Records sitemaps that were written and named elsewhere, then commits like {@link #commit()}
+     *
+     * @param names the file names of the sitemaps in order
+     * @param count the number of the last sitemap, or 0 if there is a single unnumbered one
+     */
+    List<File> commit(List<String> names, int count) {
+        this.names.addAll(names);
+        this.count = count;
+        return commit();
+    }
+
+    /**
+     * The files behind the given sitemaps; sitemaps that were not written to the default file system are left out
+     */
+    List<File> toFiles(List<String> names) {
+        List<File> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            Path path = sink.getPath(name);
+            if (path != null && path.getFileSystem() == FileSystems.getDefault()) {
+                files.add(path.toFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Adds every sitemap to an index, with its last change when the sink keeps track of that
+     */
+    void index(SitemapIndexGenerator sig, URL baseUrl) {
+        if (sink instanceof IncrementalSitemapSink incremental) {
+            for (String name : names) {
+                try {
+                    sig.addUrl(new URL(baseUrl, name), incremental.getLastModified(name));
+                } catch (MalformedURLException e) {
+                    throw new SitemapGeneratorException(e);
+                }
+            }
+        } else {
+            sig.addUrls(fileNamePrefix, fileNameSuffix, count);
+        }
+    }
+}
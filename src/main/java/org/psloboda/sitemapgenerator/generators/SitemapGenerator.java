@@ -1,20 +1,37 @@
 package org.psloboda.sitemapgenerator.generators;
 
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
 import org.psloboda.sitemapgenerator.utils.UrlUtils;
 import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.ShardFormat.Rendered;
 import org.psloboda.sitemapgenerator.generators.index.SitemapIndexGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.sinks.IncrementalSitemapSink;
+import org.psloboda.sitemapgenerator.sinks.PathSitemapSink;
+import org.psloboda.sitemapgenerator.sinks.SitemapSink;
+import org.psloboda.sitemapgenerator.sinks.StagingSitemapSink;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser.Granularity;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
-import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapGenerator<U, T>> {
     /**
@@ -22,27 +39,68 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
      */
     public static final int MAX_URLS_PER_SITEMAP = 50000;
 
+    /**
+     * 50MB (52,428,800 bytes) per uncompressed sitemap maximum
+     */
+    public static final long MAX_SITEMAP_SIZE = 50L * 1024 * 1024;
+
     private final URL baseUrl;
+    private final BaseUrl base;
     private final File baseDir;
-    private final String fileNamePrefix;
-    private final String fileNameSuffix;
+    private final SitemapSink sink;
     private final boolean allowEmptySitemap;
     private final boolean allowMultipleSitemaps;
-    private final ArrayList<U> urls = new ArrayList<>();
+    private UrlBuffer<U> urls;
     private final W3CDateTimeFormatter dateTimeFormatter;
     private final int maxUrls;
     private final boolean autoValidate;
-    private final boolean gzip;
+    /**
+     * Whether URLs are written straight to the sink; only ever with one
+     */
+    private final boolean streaming;
+    private final boolean offHeap;
+    /**
+     * Where the off-heap buffers take their chunks from, or null
+     */
+    private final OffHeapArena arena;
+    private final boolean spillToDisk;
+    private final Executor renderExecutor;
     private final ISitemapUrlRenderer<U> renderer;
-    private int mapCount = 0;
+    private final Deduplicator deduplicator;
+    private final ShardFormat format;
+    private final SitemapFiles files;
+    private final FlushStrategy flush;
+    private boolean flushed = false;
+    private long urlCount = 0;
     private boolean finished = false;
 
-    private final ArrayList<File> outFiles = new ArrayList<>();
-
     protected SitemapGenerator(AbstractSitemapGeneratorOptions<?> options, ISitemapUrlRenderer<U> renderer) {
-        baseDir = options.baseDir;
+        if (options.staging != null) {
+            if (options.incremental || options.sink != null)
+                throw new SitemapGeneratorException("publish can't be combined with incremental or a sink");
+            baseDir = options.staging.getStagingDir().toFile();
+            sink = options.staging;
+        } else if (options.incremental) {
+            baseDir = options.baseDir;
+            if (baseDir == null || options.sink != null)
+                throw new SitemapGeneratorException("incremental needs a baseDir and can't be combined with a sink");
+            try {
+                sink = new IncrementalSitemapSink(baseDir.toPath(), options.fileNamePrefix + ".manifest");
+            } catch (IOException e) {
+                throw new SitemapGeneratorException("Problem reading sitemap manifest", e);
+            }
+        } else if (options.sink != null) {
+            baseDir = options.baseDir;
+            sink = options.sink;
+        } else if (options.baseDir != null) {
+            baseDir = options.baseDir;
+            sink = new PathSitemapSink(baseDir.toPath());
+        } else {
+            baseDir = null;
+            sink = null;
+        }
         baseUrl = options.baseUrl;
-        fileNamePrefix = options.fileNamePrefix;
+        base = new BaseUrl(baseUrl);
 
         W3CDateTimeFormatter formatter = options.dateTimeFormatter;
         if (formatter == null) {
@@ -54,13 +112,45 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
         allowMultipleSitemaps = options.allowMultipleSitemaps;
         maxUrls = options.maxUrls;
         autoValidate = options.autoValidate;
-        gzip = options.gzip;
+        streaming = options.streaming && sink != null;
+        offHeap = options.offHeap && !streaming;
+        arena = offHeap ? new OffHeapArena() : null;
+        spillToDisk = options.spillToDisk;
+        renderExecutor = options.renderExecutor;
         this.renderer = renderer;
+        urls = newBuffer();
+        if (options.spillToDisk && sink != null)
+            throw new SitemapGeneratorException("spillToDisk only applies without a baseDir or sink");
+        if (options.asyncFlush > 0 && (options.streaming || renderExecutor != null))
+            throw new SitemapGeneratorException("asyncFlush can't be combined with streaming or a renderExecutor");
+        if (options.gzip && renderExecutor != null && renderExecutor == options.gzipExecutor && !(renderExecutor instanceof ForkJoinPool))
+            throw new SitemapGeneratorException("renderExecutor and gzipExecutor can only be the same executor if it is a ForkJoinPool; renders waiting for gzip could take all of its threads");
+        if (!options.deduplicate) {
+            deduplicator = null;
+        } else if (options.dedupExpectedUrls > 0) {
+            deduplicator = new BloomFilter(options.dedupExpectedUrls, options.dedupFalsePositiveRate);
+        } else {
+            deduplicator = new LongHashSet();
+        }
 
+        String fileNameSuffix;
         if (options.suffixStringPattern != null && !options.suffixStringPattern.isEmpty()) {
-            fileNameSuffix = gzip ? options.suffixStringPattern + ".xml.gz" : options.suffixStringPattern + ".xml";
+            fileNameSuffix = options.gzip ? options.suffixStringPattern + ".xml.gz" : options.suffixStringPattern + ".xml";
         } else {
-            fileNameSuffix = gzip ? ".xml.gz" : ".xml";
+            fileNameSuffix = options.gzip ? ".xml.gz" : ".xml";
+        }
+
+        format = new ShardFormat(renderer.getXmlNamespaces(), dateTimeFormatter, maxUrls, options.maxFileSize,
+                allowMultipleSitemaps, options.gzip, options.gzipExecutor);
+        files = new SitemapFiles(sink, options.fileNamePrefix, fileNameSuffix, allowEmptySitemap, autoValidate, format);
+        if (sink == null) {
+            flush = new InMemoryFlush(format, options.spillToDisk, options.spillDir);
+        } else if (renderExecutor != null) {
+            flush = new RenderFlush(files, format, renderExecutor);
+        } else if (options.asyncFlush > 0) {
+            flush = new BackgroundFlush(files, format, options.asyncFlush, options.onAsyncFlush);
+        } else {
+            flush = new DirectFlush(files);
         }
     }
 
@@ -68,32 +158,222 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
      * Add one URL of the appropriate type to this sitemap.
      * If we have reached the maximum number of URLs, we'll throw an exception if {@link #allowMultipleSitemaps} is false,
      * or else write out one sitemap immediately.
+     * In streaming mode the URL is rendered into the open sitemap file right away instead of being buffered.
+     * With {@link AbstractSitemapGeneratorOptions#deduplicate(boolean) deduplicate} on, a URL that was already
+     * added is skipped.
      *
      * @param url the URL to add to this sitemap
      * @return this
      */
     public T addUrl(U url) {
-        if (finished)
-            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
-        UrlUtils.checkUrl(url.getUrl(), baseUrl);
-        if (urls.size() == maxUrls) {
-            if (!allowMultipleSitemaps)
-                throw new SitemapGeneratorException("More than " + maxUrls + " urls, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
-            if (baseDir != null) {
-                if (mapCount == 0) mapCount++;
-                try {
-                    writeSiteMap();
-                } catch (IOException ex) {
-                    throw new SitemapGeneratorException("Closing of stream failed.", ex);
+        checkNotFinished();
+        checkUrl(url);
+        long fingerprint = deduplicator == null ? 0 : Deduplicator.fingerprint(url);
+        if (isDuplicate(fingerprint)) return getThis();
+        if (streaming) {
+            urls.add(url);
+            streamBuffered();
+        } else {
+            makeRoom();
+            urls.add(url);
+        }
+        record(fingerprint);
+        return getThis();
+    }
+
+    /**
+     * Adds a web URL given as its parts, straight into the buffer or the open sitemap file. Backs the primitive
+     * {@code addUrl} overloads of {@link WebSitemapGenerator}. A URL that the buffer can't hold as its parts, e.g.
+     * one that isn't ASCII or doesn't start with the base URL as written, or any URL when they are kept
+     * {@link AbstractSitemapGeneratorOptions#offHeap(boolean) off-heap}, is built into a {@link WebSitemapUrl}
+     * first.
+     *
+     * @param lastModEpochMillis milliseconds since the epoch, or {@link Long#MIN_VALUE} for none
+     * @param lastModGranularity whether the lastmod is rendered like a {@link java.time.LocalDate}, a
+     *                           {@link java.time.LocalDateTime} in UTC or an {@link Instant}
+     * @param changeFreq         may be null
+     * @param priority           from 0 to 1, or NaN for none
+     * @return this
+     */
+    protected T addWebUrl(CharSequence loc, long lastModEpochMillis, Granularity lastModGranularity,
+                          ChangeFreq changeFreq, float priority) {
+        checkNotFinished();
+        if (priority > 1.0) throw new IllegalArgumentException("Priority may not be greater than 1.0: " + priority);
+        if (priority < 0) throw new IllegalArgumentException("Priority may not be less than 0: " + priority);
+        long fingerprint;
+        if (base.pathStart(loc) < 0) {
+            WebSitemapUrl url = toWebSitemapUrl(loc, lastModEpochMillis, lastModGranularity, changeFreq, priority);
+            UrlUtils.checkUrl(url.getUrl(), baseUrl);
+            fingerprint = deduplicator == null ? 0 : Deduplicator.fingerprint(url);
+            if (isDuplicate(fingerprint)) return getThis();
+            bufferForOne().addWebUrl(url);
+        } else {
+            fingerprint = deduplicator == null ? 0 : Deduplicator.fingerprint(loc);
+            if (isDuplicate(fingerprint)) return getThis();
+            UrlBuffer<U> buffer = bufferForOne();
+            if (!buffer.addWebUrl(loc, lastModEpochMillis, lastModGranularity, changeFreq, priority)) {
+                buffer.addWebUrl(toWebSitemapUrl(loc, lastModEpochMillis, lastModGranularity, changeFreq, priority));
+            }
+        }
+        if (streaming) streamBuffered();
+        record(fingerprint);
+        return getThis();
+    }
+
+    /**
+     * Adds the URLs a template such as "https://www.example.com/product/{id}" gives for the ids, in order, without
+     * building a URL object or string for any of them. Backs the template {@code addUrls} overloads of
+     * {@link WebSitemapGenerator}.
+     *
+     * <p>Once the buffer is full, every further whole sitemap's worth of ids goes to the writer, the render
+     * executor or the spill file as one range, rendered straight from the ids; sitemaps are split exactly where
+     * adding the URLs one at a time would split them. Ids are buffered one at a time when deduplicating,
+     * streaming or keeping sitemaps in memory, and when the template doesn't start with the base URL as written.</p>
+     *
+     * @param lastModEpochMillis the lastmod of each id in milliseconds since the epoch, {@link Long#MIN_VALUE} for
+     *                           none; may be null
+     * @return this
+     */
+    protected T addWebUrls(String template, long[] ids, long[] lastModEpochMillis) {
+        checkNotFinished();
+        if (lastModEpochMillis != null && lastModEpochMillis.length != ids.length)
+            throw new IllegalArgumentException(ids.length + " ids but " + lastModEpochMillis.length + " lastmods");
+        UrlTemplate parsed = new UrlTemplate(template, base, baseUrl);
+        int i = 0;
+        if (parsed.isRelative() && deduplicator == null && !streaming && !flush.keepsUrls()) {
+            while (i < ids.length && urls.size() < maxUrls) {
+                addFromTemplate(parsed, ids[i], lastModAt(lastModEpochMillis, i++));
+            }
+            if (i < ids.length) {
+                makeRoom();
+                // the last run stays in the buffer, as it would have if the ids had been added one at a time
+                for (; ids.length - i > maxUrls; i += maxUrls) {
+                    long[] lastMods = lastModEpochMillis == null ? null : Arrays.copyOfRange(lastModEpochMillis, i, i + maxUrls);
+                    flushFull(new TemplateRange(parsed, Arrays.copyOfRange(ids, i, i + maxUrls), lastMods));
+                    urlCount += maxUrls;
                 }
-                mapCount++;
-                urls.clear();
             }
         }
-        urls.add(url);
+        for (; i < ids.length; i++) {
+            addFromTemplate(parsed, ids[i], lastModAt(lastModEpochMillis, i));
+        }
+        return getThis();
+    }
+
+    /**
+     * Adds the URLs a template gives for the ids one at a time, in encounter order
+     *
+     * @see #addWebUrls(String, long[], long[])
+     */
+    protected T addWebUrls(String template, LongStream ids) {
+        checkNotFinished();
+        UrlTemplate parsed = new UrlTemplate(template, base, baseUrl);
+        ids.forEachOrdered(id -> addFromTemplate(parsed, id, Long.MIN_VALUE));
         return getThis();
     }
 
+    private static long lastModAt(long[] lastModEpochMillis, int index) {
+        return lastModEpochMillis == null ? Long.MIN_VALUE : lastModEpochMillis[index];
+    }
+
+    private void checkNotFinished() {
+        if (finished)
+            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
+    }
+
+    private void addFromTemplate(UrlTemplate template, long id, long lastModEpochMillis) {
+        if (!template.isRelative()) {
+            addWebUrl(template.toUrl(id), lastModEpochMillis, Granularity.INSTANT, null, Float.NaN);
+            return;
+        }
+        long fingerprint = deduplicator == null ? 0 : Deduplicator.fingerprint(template.prefix, id, template.suffix);
+        if (isDuplicate(fingerprint)) return;
+        UrlBuffer<U> buffer = bufferForOne();
+        if (!buffer.add(template, id, lastModEpochMillis)) {
+            buffer.addWebUrl(toWebSitemapUrl(template.toUrl(id), lastModEpochMillis, Granularity.INSTANT, null, Float.NaN));
+        }
+        if (streaming) streamBuffered();
+        record(fingerprint);
+    }
+
+    /**
+     * Whether deduplication is on and a URL with the fingerprint was added already
+     */
+    private boolean isDuplicate(long fingerprint) {
+        return deduplicator != null && deduplicator.contains(fingerprint);
+    }
+
+    /**
+     * Records a URL once it was added, so one that failed, e.g. because its sitemap couldn't be written, isn't
+     * skipped as a duplicate when it is added again
+     */
+    private void record(long fingerprint) {
+        if (deduplicator != null) deduplicator.add(fingerprint);
+        urlCount++;
+    }
+
+    /**
+     * The buffer to add one URL to, once there is room in it, or while streaming the buffer that is always empty
+     * then, which holds the URL until {@link #streamBuffered()} writes it out
+     */
+    private UrlBuffer<U> bufferForOne() {
+        if (!streaming) makeRoom();
+        return urls;
+    }
+
+    private void streamBuffered() {
+        try {
+            files.stream(urls, 0);
+        } finally {
+            urls.clear();
+        }
+    }
+
+    private static WebSitemapUrl toWebSitemapUrl(CharSequence loc, long lastModEpochMillis, Granularity lastModGranularity,
+                                                 ChangeFreq changeFreq, float priority) {
+        WebSitemapUrl.Options options = new WebSitemapUrl.Options(loc.toString()).changeFreq(changeFreq);
+        if (lastModEpochMillis != Long.MIN_VALUE) {
+            options.lastMod(switch (lastModGranularity) {
+                case DATE -> LocalDate.ofEpochDay(Math.floorDiv(lastModEpochMillis, 86_400_000L));
+                case LOCAL_DATE_TIME -> LocalDateTime.ofEpochSecond(Math.floorDiv(lastModEpochMillis, 1000),
+                        Math.floorMod(lastModEpochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+                case INSTANT -> Instant.ofEpochMilli(lastModEpochMillis);
+            });
+        }
+        // via the shortest decimal form, so 0.3f stays 0.3 rather than 0.30000001192092896
+        if (!Float.isNaN(priority)) options.priority(Double.valueOf(Float.toString(priority)));
+        return new WebSitemapUrl(options);
+    }
+
+    /**
+     * Flushes the buffered URLs if the buffer is full, unless they stay in memory
+     */
+    private void makeRoom() {
+        if (urls.size() < maxUrls) return;
+        checkMultipleSitemapsAllowed();
+        if (flush.keepsUrls()) return;
+        flushFull(urls);
+        if (flush.handsOff()) {
+            urls = newBuffer();
+        } else {
+            urls.clear();
+        }
+    }
+
+    /**
+     * Writes out, hands off or spills one sitemap's worth of URLs, depending on the {@link FlushStrategy}
+     */
+    private void flushFull(PendingUrls full) {
+        checkMultipleSitemapsAllowed();
+        flush.flush(full);
+        flushed = true;
+    }
+
+    private void checkMultipleSitemapsAllowed() {
+        if (!allowMultipleSitemaps)
+            throw new SitemapGeneratorException("More than " + maxUrls + " urls, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
+    }
+
     /**
      * Add multiple URLs of the appropriate type to this sitemap, one at a time.
      * If we have reached the maximum number of URLs, we'll throw an exception if {@link #allowMultipleSitemaps} is false,
@@ -144,13 +424,26 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
     public T addUrl(String url) {
         U sitemapUrl;
         try {
-            sitemapUrl = renderer.getUrlClass().getConstructor(String.class).newInstance(url);
+            sitemapUrl = newUrl(url);
             return addUrl(sitemapUrl);
         } catch (Exception e) {
             throw new SitemapGeneratorException(e);
         }
     }
 
+    /**
+     * Makes a URL of the renderer's type. A plain web URL under the base URL is kept relative to it rather
+     * than parsed into a {@link URL}.
+     */
+    @SuppressWarnings("unchecked")
+    U newUrl(String url) throws ReflectiveOperationException {
+        if (renderer.getUrlClass() == WebSitemapUrl.class) {
+            RelativeWebSitemapUrl relative = base.relativize(url);
+            if (relative != null) return (U) relative;
+        }
+        return renderer.getUrlClass().getConstructor(String.class).newInstance(url);
+    }
+
     /**
      * Add multiple URLs of the appropriate type to this sitemap, one at a time.
      * If we have reached the maximum number of URLs, we'll throw an exception if {@link #allowMultipleSitemaps} is false,
@@ -187,23 +480,139 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
         return (T) this;
     }
 
+    /**
+     * Reports each sitemap once it is finished and its name is final, on the thread that finished it
+     */
+    void onShard(Consumer<SitemapShard> listener) {
+        files.onShard(listener);
+    }
+
+    void checkUrl(U url) {
+        if (url instanceof RelativeWebSitemapUrl relative && relative.isUnder(base)) return;
+        UrlUtils.checkUrl(url.getUrl(), baseUrl);
+    }
+
+    /**
+     * Whether deduplication is on and the URL was recorded already; safe to call from any number of threads
+     */
+    boolean isDuplicate(U url) {
+        if (deduplicator == null) return false;
+        long fingerprint = Deduplicator.fingerprint(url);
+        synchronized (deduplicator) {
+            return deduplicator.contains(fingerprint);
+        }
+    }
+
+    /**
+     * Records the URL when deduplicating; safe to call from any number of threads. Call it once nothing can stop
+     * the URL from being added anymore.
+     *
+     * @return whether the URL should be added
+     */
+    boolean isNew(U url) {
+        if (deduplicator == null) return true;
+        long fingerprint = Deduplicator.fingerprint(url);
+        synchronized (deduplicator) {
+            return deduplicator.add(fingerprint);
+        }
+    }
+
+    int getMaxUrls() {
+        return maxUrls;
+    }
+
+    boolean isAllowMultipleSitemaps() {
+        return allowMultipleSitemaps;
+    }
+
+    boolean isAllowEmptySitemap() {
+        return allowEmptySitemap;
+    }
+
+    /**
+     * Whether URLs are streamed, flushed in the background, spilled to disk or buffered off-heap instead of
+     * simply being buffered
+     */
+    boolean hasBufferMode() {
+        return streaming || offHeap || spillToDisk || flush instanceof BackgroundFlush;
+    }
+
+    /**
+     * Whether nothing has been added to or written by this generator yet
+     */
+    boolean isUnused() {
+        return !finished && urls.size() == 0 && !flushed && files.isUnused();
+    }
+
+    /**
+     * Records sitemaps written on this generator's behalf, so {@link #writeSitemapsWithIndex()} can index them
+     *
+     * @param names the file names of the sitemaps in order
+     * @param count the number of the last sitemap, or 0 if there is a single unnumbered one
+     * @return the files written
+     */
+    List<File> finish(List<String> names, int count) {
+        checkNotFinished();
+        finished = true;
+        return files.commit(names, count);
+    }
+
     /**
      * Write out remaining URLs; this method can only be called once.  This is necessary so we can keep an accurate count for {@link #writeSitemapsWithIndex()}.
      *
-     * @return a list of files we wrote out to disk
+     * @return a list of files we wrote out to disk; empty when a {@link SitemapSink} that doesn't write files is configured.
+     * In {@link AbstractSitemapGeneratorOptions#incremental(boolean) incremental} mode, only the files whose content changed.
      */
     public List<File> write() {
-        if (finished)
-            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
-        if (!allowEmptySitemap && urls.isEmpty() && mapCount == 0)
+        checkNotFinished();
+        if (!allowEmptySitemap && urls.size() == 0 && !flushed && files.isUnused())
             throw new SitemapGeneratorException("No URLs added, sitemap would be empty; you must add some URLs with addUrls");
-        try {
-            writeSiteMap();
-        } catch (IOException ex) {
-            throw new SitemapGeneratorException("Closing of streams has failed at some point.", ex);
+        if (streaming) {
+            files.closeStream();
+        } else {
+            flush.finish(urls);
+            // every buffer has been written and handed its chunks back by now
+            if (arena != null) arena.close();
         }
         finished = true;
-        return outFiles;
+        return files.commit();
+    }
+
+    /**
+     * All URLs added must be under this base URL
+     */
+    public URL getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Checks a URL given as text as the primitive {@code addUrl} overloads of {@link WebSitemapGenerator} do: with
+     * one compare if it starts with the base URL exactly as written, otherwise by parsing it into a {@link URL}.
+     * Safe to call from any thread, e.g. to weed out bad input while parsing it.
+     *
+     * @throws SitemapGeneratorException if the URL is malformed or isn't under the base URL
+     */
+    public void checkUrl(CharSequence url) {
+        if (base.pathStart(url) < 0) UrlUtils.checkUrl(UrlUtils.toUrl(url.toString()), baseUrl);
+    }
+
+    /**
+     * The number of URLs added so far, not counting those skipped as duplicates
+     */
+    public long getUrlCount() {
+        return urlCount;
+    }
+
+    /**
+     * The sitemaps named by the background writer so far when {@link AbstractSitemapGeneratorOptions#asyncFlush(int)}
+     * is enabled, one future per file, in file order. A file is named once its buffer is rendered, the next time a
+     * buffer is handed off or on {@code write()}; to get each future as soon as that happens, pass a listener to
+     * {@link AbstractSitemapGeneratorOptions#asyncFlush(int, java.util.function.Consumer)}.
+     *
+     * @return the pending and completed flushes; a future completes with null when the sink doesn't write files
+     */
+    public List<CompletableFuture<File>> getAsyncFlushes() {
+        return flush.getAsyncFlushes();
     }
 
     /**
@@ -211,35 +620,69 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
      * Each string in the list is a formatted list of URLs.
      * We return a list because the URLs may not all fit --
      * google specifies a maximum of 50,000 URLs in one sitemap.
+     * With a render executor configured, the sitemaps are rendered concurrently.
+     * Sitemaps {@link AbstractSitemapGeneratorOptions#spillToDisk(boolean) spilled to disk} are deleted once they
+     * are read back, so this can only be called once then.
      *
      * @return a list of XML-formatted strings
+     * @see #streamAsStrings()
      */
     public List<String> writeAsStrings() {
         List<String> listOfSiteMapStrings = new ArrayList<>();
+        try {
+            for (int i = 0; i < flush.spilledCount(); i++) {
+                listOfSiteMapStrings.add(flush.readSpilled(i));
+            }
+        } finally {
+            flush.closeSpilled();
+        }
+        List<CompletableFuture<String>> futures = new ArrayList<>();
         for (int start = 0; start < urls.size(); start += maxUrls) {
             int end = start + maxUrls;
             if (end > urls.size()) {
                 end = urls.size();
             }
-            StringBuilder sb = new StringBuilder();
-            writeSiteMapAsString(sb, urls.subList(start, end));
-            listOfSiteMapStrings.add(sb.toString());
+            int from = start;
+            int to = end;
+            if (renderExecutor != null) {
+                futures.add(CompletableFuture.supplyAsync(() -> format.renderAsString(urls, from, to), renderExecutor));
+            } else {
+                listOfSiteMapStrings.add(format.renderAsString(urls, from, to));
+            }
+        }
+        for (CompletableFuture<String> future : futures) {
+            listOfSiteMapStrings.add(FlushStrategy.join(future));
         }
         return listOfSiteMapStrings;
     }
 
-    private void writeSiteMapAsString(StringBuilder sb, List<U> urls) {
-        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        sb.append("<urlset xmlns=\"https://www.sitemaps.org/schemas/sitemap/0.9\" ");
-        if (renderer.getXmlNamespaces() != null) {
-            sb.append(renderer.getXmlNamespaces());
-            sb.append(' ');
-        }
-        sb.append(">\n");
-        for (U url : urls) {
-            renderer.render(url, sb, dateTimeFormatter);
-        }
-        sb.append("</urlset>");
+    /**
+     * Writes out the sitemaps as strings like {@link #writeAsStrings()}, but lazily: each sitemap is rendered, or
+     * read back from the {@link AbstractSitemapGeneratorOptions#spillToDisk(boolean) spill file}, only when the
+     * stream gets to it, so only one of them is held in memory at a time. Don't add URLs while consuming the stream.
+     * Close the stream to delete the spill file; the spilled sitemaps can't be read again after that.
+     *
+     * @return a sequential stream of XML-formatted strings
+     */
+    public Stream<String> streamAsStrings() {
+        int spilled = flush.spilledCount();
+        int chunks = (urls.size() + maxUrls - 1) / maxUrls;
+        return IntStream.range(0, spilled + chunks).mapToObj(i -> {
+            if (i < spilled) return flush.readSpilled(i);
+            int start = (i - spilled) * maxUrls;
+            return format.renderAsString(urls, start, Math.min(start + maxUrls, urls.size()));
+        }).onClose(flush::closeSpilled);
+    }
+
+    /**
+     * The buffer for URLs waiting to be written: {@link OffHeapUrls} when asked for, otherwise web sitemaps keep
+     * them in {@link WebUrlColumns}, the other types as the URL objects. Streaming generators only hold each URL
+     * for as long as it takes to write it, so they never buffer off-heap.
+     */
+    private UrlBuffer<U> newBuffer() {
+        if (offHeap) return new OffHeapUrls<>(arena, renderer, dateTimeFormatter);
+        if (this instanceof WebSitemapGenerator) return new WebUrlColumns<>(base, renderer);
+        return new ObjectUrls<>(renderer);
     }
 
     /**
@@ -269,64 +712,32 @@ public abstract class SitemapGenerator<U extends ISitemapUrl, T extends SitemapG
 
     private SitemapIndexGenerator prepareSitemapIndexGenerator(File outFile) {
         if (!finished) throw new SitemapGeneratorException("Sitemaps not generated yet; call write() first");
-        SitemapIndexGenerator sig = new SitemapIndexGenerator.Options(baseUrl, outFile)
+        SitemapIndexGenerator.Options options = new SitemapIndexGenerator.Options(baseUrl, outFile);
+        if (sink instanceof StagingSitemapSink staging) options.publish(staging);
+        SitemapIndexGenerator sig = options
                 .dateFormat(dateTimeFormatter)
                 .autoValidate(autoValidate)
                 .build();
 
-        sig.addUrls(fileNamePrefix, fileNameSuffix, mapCount);
+        files.index(sig, baseUrl);
         return sig;
     }
 
-    private void writeSiteMap() throws IOException {
-        if (baseDir == null) {
-            throw new NullPointerException("To write to files, baseDir must not be null");
-        }
-
-        if (urls.isEmpty() && (mapCount > 0 || !allowEmptySitemap)) {
-            return;
-        }
-
-        String prefix;
-
-        if (mapCount > 0) {
-            prefix = this.fileNamePrefix + mapCount;
-        } else {
-            prefix = this.fileNamePrefix;
-        }
-
-        File outFile = new File(baseDir, prefix + fileNameSuffix);
-        outFiles.add(outFile);
-
-        try {
-            if (gzip) {
-                try(FileOutputStream fileStream = new FileOutputStream(outFile);
-                    GZIPOutputStream gzipStream = new GZIPOutputStream(fileStream);
-                    OutputStreamWriter out = new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8.newEncoder())) {
-
-                    writeSiteMap(out);
-                }
-            } else {
-                try (OutputStreamWriter out = new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8.newEncoder())) {
-                    writeSiteMap(out);
-                }
-            }
-
-            if (autoValidate) {
-                SitemapValidator.validateWebSitemap(outFile);
-            }
-        } catch (IOException e) {
-            throw new SitemapGeneratorException("Problem writing sitemap file " + outFile, e);
-        } catch (SAXException e) {
-            throw new SitemapGeneratorException("Sitemap file failed to validate (bug?)", e);
-        }
+    /**
+     * Renders URL objects into complete sitemap files in memory, splitting them exactly where writing them would;
+     * safe to call from any thread
+     */
+    List<Rendered> renderSiteMaps(List<? extends U> chunk) {
+        return format.render(new ObjectUrls<>(renderer, Collections.unmodifiableList(chunk)));
     }
 
-    private void writeSiteMap(OutputStreamWriter out) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        writeSiteMapAsString(sb, urls);
-        out.write(sb.toString());
-        out.flush();
+    /**
+     * Writes one rendered sitemap to the sink; safe to call from any thread
+     *
+     * @param number the number in the file name, or 0 for an unnumbered sitemap
+     * @return the file name of the sitemap
+     */
+    String writeRenderedSiteMap(int number, Rendered siteMap) {
+        return files.writeRendered(number, siteMap);
     }
-
 }
@@ -0,0 +1,14 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.nio.file.Path;
+
+/**
+ * One finished sitemap file
+ *
+ * @param name      the file name, e.g. "sitemap3.xml"
+ * @param path      where the sitemap was written, or null if the sink doesn't write files
+ * @param urlCount  the number of URLs in the sitemap
+ * @param byteCount the uncompressed size of the sitemap, which the size limit applies to
+ */
+public record SitemapShard(String name, Path path, int urlCount, long byteCount) {
+}
@@ -14,6 +14,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * Validates sitemaps and sitemap indexes
@@ -74,6 +78,18 @@ public class SitemapValidator {
         validateXml(sitemap, sitemapSchema);
     }
 
+    /**
+     * Validates an ordinary web sitemap file (NOT a Google-specific sitemap) on any file system
+     */
+    public static void validateWebSitemap(Path sitemap) throws SAXException {
+        lazyLoad();
+        try (Reader reader = Files.newBufferedReader(sitemap, StandardCharsets.UTF_8)) {
+            validateXml(reader, sitemapSchema);
+        } catch (IOException e) {
+            throw new SitemapGeneratorException(e);
+        }
+    }
+
     /**
      * Validates a sitemap index file
      */
@@ -92,4 +108,9 @@ public class SitemapValidator {
             throw new SitemapGeneratorException(e);
         }
     }
+
+    private static void validateXml(Reader reader, Schema schema) throws SAXException, IOException {
+        Validator validator = schema.newValidator();
+        validator.validate(new SAXSource(new InputSource(reader)));
+    }
 }
@@ -0,0 +1,401 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Puts URLs in order before they reach a generator, so the same set of URLs always produces the same sitemaps,
+ * whatever order it arrives in. Sorted paths also compress better, and sorting by {@link Order#LAST_MOD_DESCENDING}
+ * puts fresh content in the first sitemaps.
+ *
+ * <p>URLs are collected in memory up to {@link #memoryLimit(long)}; beyond that each batch is sorted and spilled to
+ * a temporary file in a compact binary form. {@link #write()} merges those runs and adds the URLs to the wrapped
+ * generator in order, then writes it out. The temporary files are deleted afterwards.</p>
+ *
+ * <pre>
+ * SortingSitemapGenerator sorter = new SortingSitemapGenerator(
+ *         WebSitemapGenerator.builder("http://example.com", myDir).build(), SortingSitemapGenerator.Order.URL)
+ *         .memoryLimit(256 * 1024 * 1024);
+ * </pre>
+ *
+ * Only plain {@link WebSitemapUrl}s can be sorted; their lastmod must be a {@link LocalDate}, {@link LocalDateTime},
+ * {@link Instant} or {@link ZonedDateTime}, the types the generators can render.
+ */
+public class SortingSitemapGenerator {
+    /**
+     * 64MB of URLs in memory before spilling
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    private static final int MAX_OPEN_RUNS = 64;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte NO_LASTMOD = 0;
+    private static final byte LOCAL_DATE = 1;
+    private static final byte LOCAL_DATE_TIME = 2;
+    private static final byte INSTANT = 3;
+    private static final byte ZONED_DATE_TIME = 4;
+    private static final byte HAS_PRIORITY = 8;
+
+    /**
+     * The order URLs are written in
+     */
+    public enum Order {
+        /**
+         * By URL, comparing their text
+         */
+        URL(Comparator.comparing(Pending::loc)),
+        /**
+         * Most recently modified first; URLs without a lastmod come last. Dates and local date-times count as UTC.
+         * URLs modified at the same time are ordered by URL.
+         */
+        LAST_MOD_DESCENDING(Comparator.comparingLong(Pending::time).reversed().thenComparing(Pending::loc));
+
+        private final Comparator<Pending> comparator;
+
+        Order(Comparator<Pending> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    private final SitemapGenerator<WebSitemapUrl, ?> generator;
+    private final Comparator<Pending> comparator;
+    private final List<Pending> pending = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+    private Path tempDir;
+    private long pendingBytes = 0;
+    private boolean finished = false;
+
+    /**
+     * Wraps a generator that nothing has been added to yet; don't use the generator directly afterwards,
+     * except to write a sitemap index.
+     */
+    public SortingSitemapGenerator(SitemapGenerator<WebSitemapUrl, ?> generator, Order order) {
+        if (!generator.isUnused())
+            throw new SitemapGeneratorException("The generator has already been used; wrap a new one");
+        if (order == null) throw new NullPointerException("order may not be null");
+        this.generator = generator;
+        this.comparator = order.comparator;
+    }
+
+    /**
+     * The approximate number of bytes of heap the URLs waiting to be sorted may take before they are spilled
+     * to disk; {@link #DEFAULT_MEMORY_LIMIT} by default. Merging takes another 128KB per spilled run, for up to
+     * 64 runs at a time.
+     */
+    public SortingSitemapGenerator memoryLimit(long memoryLimit) {
+        if (memoryLimit < 1) throw new IllegalArgumentException("memoryLimit must be positive: " + memoryLimit);
+        this.memoryLimit = memoryLimit;
+        return this;
+    }
+
+    /**
+     * Where to spill sorted runs; the system's temporary directory by default
+     */
+    public SortingSitemapGenerator tempDir(Path tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    /**
+     * Add one URL; it reaches the generator when {@link #write()} is called
+     *
+     * @param url the URL to add
+     * @return this
+     */
+    public SortingSitemapGenerator addUrl(WebSitemapUrl url) {
+        if (finished)
+            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
+        if (url.getClass() != WebSitemapUrl.class)
+            throw new SitemapGeneratorException("Only plain web sitemap URLs can be sorted, not " + url.getClass().getSimpleName());
+        generator.checkUrl(url);
+        String loc = url.getUrl().toExternalForm();
+        pending.add(new Pending(loc, sortTime(url.getLastMod()), url));
+        pendingBytes += estimateSize(loc);
+        if (pendingBytes >= memoryLimit) spill();
+        return this;
+    }
+
+    /**
+     * Add one URL
+     *
+     * @param url the URL to add
+     * @return this
+     */
+    public SortingSitemapGenerator addUrl(String url) {
+        return addUrl(new WebSitemapUrl(url));
+    }
+
+    /**
+     * Add multiple URLs, one at a time
+     *
+     * @param urls the URLs to add
+     * @return this
+     */
+    public SortingSitemapGenerator addUrls(Iterable<? extends WebSitemapUrl> urls) {
+        for (WebSitemapUrl url : urls) addUrl(url);
+        return this;
+    }
+
+    /**
+     * Add every URL to the generator in order and write out the sitemaps; this method can only be called once.
+     *
+     * @return the files the generator wrote, as from its own {@code write()}
+     */
+    public List<File> write() {
+        if (finished)
+            throw new SitemapGeneratorException("Sitemap already printed; you must create a new generator to make more sitemaps");
+        finished = true;
+        try {
+            if (runs.isEmpty()) {
+                pending.sort(comparator);
+                for (Pending url : pending) generator.addUrl(url.url());
+                pending.clear();
+            } else {
+                if (!pending.isEmpty()) spill();
+                while (runs.size() > MAX_OPEN_RUNS) {
+                    List<Run> batch = new ArrayList<>(runs.subList(0, MAX_OPEN_RUNS));
+                    runs.subList(0, MAX_OPEN_RUNS).clear();
+                    runs.add(mergeToRun(batch));
+                }
+                merge(runs, url -> generator.addUrl(url.url()));
+            }
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem sorting URLs", e);
+        } finally {
+            deleteRuns(runs);
+        }
+        return generator.write();
+    }
+
+    /**
+     * After you've called {@link #write()}, call this to generate a sitemap index of all sitemaps you generated.
+     * The sitemap index is written to {baseDir}/sitemap_index.xml
+     */
+    public File writeSitemapsWithIndex() {
+        return generator.writeSitemapsWithIndex();
+    }
+
+    /**
+     * After you've called {@link #write()}, call this to generate a sitemap index of all sitemaps you generated.
+     *
+     * @param outFile the destination file of the sitemap index.
+     */
+    public File writeSitemapsWithIndex(File outFile) {
+        return generator.writeSitemapsWithIndex(outFile);
+    }
+
+    private void spill() {
+        pending.sort(comparator);
+        try {
+            Run run = newRun();
+            try (DataOutputStream out = run.openOutput()) {
+                for (Pending url : pending) writeUrl(out, url);
+            }
+            run.count = pending.size();
+            runs.add(run);
+        } catch (IOException e) {
+            deleteRuns(runs);
+            throw new SitemapGeneratorException("Problem spilling URLs to disk", e);
+        }
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    private Run mergeToRun(List<Run> batch) throws IOException {
+        Run run = newRun();
+        try (DataOutputStream out = run.openOutput()) {
+            merge(batch, url -> {
+                try {
+                    writeUrl(out, url);
+                    run.count++;
+                } catch (IOException e) {
+                    throw new SitemapGeneratorException("Problem spilling URLs to disk", e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            deleteRuns(new ArrayList<>(List.of(run)));
+            throw e;
+        } finally {
+            deleteRuns(batch);
+        }
+        return run;
+    }
+
+    private void merge(List<Run> batch, Consumer<Pending> target) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> comparator.compare(a.head, b.head));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Run run : batch) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) heads.add(reader);
+            }
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                target.accept(reader.head);
+                if (reader.advance()) heads.add(reader);
+            }
+        } finally {
+            for (RunReader reader : readers) reader.in.close();
+        }
+    }
+
+    private Run newRun() throws IOException {
+        Path file = tempDir != null ? Files.createTempFile(tempDir, "sitemap-sort", ".run")
+                : Files.createTempFile("sitemap-sort", ".run");
+        return new Run(file);
+    }
+
+    private static void deleteRuns(List<Run> runs) {
+        for (Run run : runs) {
+            try {
+                Files.deleteIfExists(run.file);
+            } catch (IOException e) {
+                // leave it to the temporary directory's cleanup
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * A rough count of the heap a URL takes: the URL object and its parts, the location string and the list slot
+     */
+    private static long estimateSize(String loc) {
+        return 160 + 6L * loc.length();
+    }
+
+    private static long sortTime(Temporal lastMod) {
+        if (lastMod == null) return Long.MIN_VALUE;
+        if (lastMod instanceof LocalDate date) return date.toEpochDay() * 86_400_000L;
+        if (lastMod instanceof LocalDateTime dateTime) return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (lastMod instanceof Instant instant) return instant.toEpochMilli();
+        if (lastMod instanceof ZonedDateTime dateTime) return dateTime.toInstant().toEpochMilli();
+        throw new SitemapGeneratorException("Can't sort a lastmod of type " + lastMod.getClass().getSimpleName());
+    }
+
+    /**
+     * One URL: the location as UTF-8 with its length, a flags byte holding the lastmod type and whether there
+     * is a priority, the change frequency, then the lastmod and priority if present
+     */
+    private static void writeUrl(DataOutputStream out, Pending pending) throws IOException {
+        WebSitemapUrl url = pending.url();
+        byte[] loc = pending.loc().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(loc.length);
+        out.write(loc);
+
+        Temporal lastMod = url.getLastMod();
+        byte type = lastMod == null ? NO_LASTMOD
+                : lastMod instanceof LocalDate ? LOCAL_DATE
+                : lastMod instanceof LocalDateTime ? LOCAL_DATE_TIME
+                : lastMod instanceof Instant ? INSTANT
+                : ZONED_DATE_TIME;
+        out.writeByte(type | (url.getPriority() != null ? HAS_PRIORITY : 0));
+        out.writeByte(url.getChangeFreq() == null ? 0 : url.getChangeFreq().ordinal() + 1);
+        switch (type) {
+            case LOCAL_DATE -> out.writeLong(((LocalDate) lastMod).toEpochDay());
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime dateTime = (LocalDateTime) lastMod;
+                out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(dateTime.getNano());
+            }
+            case INSTANT -> {
+                out.writeLong(((Instant) lastMod).getEpochSecond());
+                out.writeInt(((Instant) lastMod).getNano());
+            }
+            case ZONED_DATE_TIME -> {
+                ZonedDateTime dateTime = (ZonedDateTime) lastMod;
+                out.writeLong(dateTime.toEpochSecond());
+                out.writeInt(dateTime.getNano());
+                out.writeUTF(dateTime.getZone().getId());
+            }
+            default -> {
+            }
+        }
+        if (url.getPriority() != null) out.writeDouble(url.getPriority());
+    }
+
+    private static Pending readUrl(DataInputStream in) throws IOException {
+        String loc = new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+        int flags = in.readByte();
+        int changeFreq = in.readByte();
+        WebSitemapUrl.Options options = new WebSitemapUrl.Options(UrlUtils.toUrl(loc));
+        switch (flags & 7) {
+            case LOCAL_DATE -> options.lastMod(LocalDate.ofEpochDay(in.readLong()));
+            case LOCAL_DATE_TIME -> options.lastMod(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            case INSTANT -> options.lastMod(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+            case ZONED_DATE_TIME -> {
+                Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                options.lastMod(ZonedDateTime.ofInstant(instant, ZoneId.of(in.readUTF())));
+            }
+            default -> {
+            }
+        }
+        if (changeFreq > 0) options.changeFreq(ChangeFreq.values()[changeFreq - 1]);
+        if ((flags & HAS_PRIORITY) != 0) options.priority(in.readDouble());
+        WebSitemapUrl url = options.build();
+        return new Pending(loc, sortTime(url.getLastMod()), url);
+    }
+
+    /**
+     * @param time the lastmod in epoch milliseconds, for sorting
+     */
+    private record Pending(String loc, long time, WebSitemapUrl url) {
+    }
+
+    private static final class Run {
+        final Path file;
+        long count = 0;
+
+        Run(Path file) {
+            this.file = file;
+        }
+
+        DataOutputStream openOutput() throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE));
+        }
+    }
+
+    private static final class RunReader {
+        final DataInputStream in;
+        long remaining;
+        Pending head;
+
+        RunReader(Run run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), IO_BUFFER_SIZE));
+            this.remaining = run.count;
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            head = readUrl(in);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Rendered sitemaps kept in one deflated temporary file instead of on the heap, for generators without a base
+ * directory. The generator closes it once the sitemaps were read back, which deletes the file. Some platforms
+ * unlink it as soon as it is opened, but its disk space is only freed on close there too.
+ */
+final class SpillFile implements Closeable {
+    private final FileChannel channel;
+    private long[] offsets = new long[16];
+    private int[] compressedLengths = new int[16];
+    private int[] lengths = new int[16];
+    private int size = 0;
+    private long end = 0;
+
+    SpillFile(Path dir) throws IOException {
+        Path file = dir != null ? Files.createTempFile(dir, "sitemap-spill", ".tmp") : Files.createTempFile("sitemap-spill", ".tmp");
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Stores one more sitemap
+     */
+    synchronized void append(String sitemap) throws IOException {
+        byte[] bytes = sitemap.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteBuffer out = ByteBuffer.wrap(compressed.toByteArray());
+        long position = end;
+        while (out.hasRemaining()) {
+            position += channel.write(out, position);
+        }
+
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            compressedLengths = Arrays.copyOf(compressedLengths, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        offsets[size] = end;
+        compressedLengths[size] = compressed.size();
+        lengths[size] = bytes.length;
+        size++;
+        end = position;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Reads back one sitemap, in the order they were stored
+     */
+    String get(int index) throws IOException {
+        long offset;
+        int compressedLength;
+        int length;
+        synchronized (this) {
+            if (index >= size) throw new IndexOutOfBoundsException(index);
+            offset = offsets[index];
+            compressedLength = compressedLengths[index];
+            length = lengths[index];
+        }
+
+        ByteBuffer in = ByteBuffer.allocate(compressedLength);
+        while (in.hasRemaining()) {
+            if (channel.read(in, offset + in.position()) < 0) throw new IOException("Spilled sitemap " + index + " is truncated");
+        }
+        byte[] bytes = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(in.array());
+            int n = 0;
+            while (n < length) {
+                int inflated = inflater.inflate(bytes, n, length - n);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IOException("Spilled sitemap " + index + " is corrupt");
+                n += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Spilled sitemap " + index + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
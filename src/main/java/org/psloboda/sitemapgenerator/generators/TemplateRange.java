@@ -0,0 +1,41 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+/**
+ * A run of ids that fills a whole sitemap, rendered straight from a {@link UrlTemplate} and the ids, so it can
+ * be written, rendered on another thread or spilled like a full buffer without ever being buffered
+ */
+final class TemplateRange implements PendingUrls {
+    private final UrlTemplate template;
+    private final long[] ids;
+    private final long[] lastMods;
+
+    /**
+     * @param ids      the ids, owned by the range from now on
+     * @param lastMods the lastmods in milliseconds since the epoch, {@link Long#MIN_VALUE} for none; may be null
+     */
+    TemplateRange(UrlTemplate template, long[] ids, long[] lastMods) {
+        this.template = template;
+        this.ids = ids;
+        this.lastMods = lastMods;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public void render(int index, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        WebUrlMarkup.startUrl(sb);
+        sb.append(template.escapedPrefix).append(ids[index]).append(template.escapedSuffix);
+        WebUrlMarkup.endLoc(sb, null, lastMods == null ? Long.MIN_VALUE : lastMods[index], null, null, dateTimeFormatter);
+        WebUrlMarkup.endUrl(sb);
+    }
+
+    @Override
+    public CharSequence loc(int index) {
+        return template.toUrl(ids[index]);
+    }
+}
@@ -0,0 +1,49 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser.Granularity;
+
+/**
+ * The URLs a generator has buffered but not written yet
+ *
+ * @param <U> the type of URL the generator's renderer renders
+ */
+interface UrlBuffer<U extends ISitemapUrl> extends PendingUrls {
+
+    void add(U url);
+
+    /**
+     * Adds a plain web URL, which every kind of sitemap can hold
+     */
+    void addWebUrl(WebSitemapUrl url);
+
+    /**
+     * Adds a web URL from its parts, without any intermediate objects
+     *
+     * @param lastModEpochMillis {@link Long#MIN_VALUE} for none
+     * @param lastModGranularity how to render the lastmod
+     * @param priority           NaN for none
+     * @return false, having added nothing, if the buffer can't hold the URL that way; it is then added as a
+     * {@link WebSitemapUrl}
+     */
+    default boolean addWebUrl(CharSequence loc, long lastModEpochMillis, Granularity lastModGranularity,
+                              ChangeFreq changeFreq, float priority) {
+        return false;
+    }
+
+    /**
+     * Adds the URL a template under the base URL gives for an id, without any intermediate objects
+     *
+     * @param lastModEpochMillis rendered like an {@link java.time.Instant}, or {@link Long#MIN_VALUE} for none
+     * @return false, having added nothing, if the buffer can't hold the URL that way
+     */
+    default boolean add(UrlTemplate template, long id, long lastModEpochMillis) {
+        return false;
+    }
+
+    /**
+     * Forgets the URLs, keeping what they were held in for the next ones where that is worth it
+     */
+    void clear();
+}
@@ -0,0 +1,119 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+
+import java.net.URL;
+
+/**
+ * A URL with one "{id}" placeholder, e.g. "https://www.example.com/product/{id}", split once so the URL of each
+ * id can be written digit by digit
+ */
+final class UrlTemplate {
+    static final String PLACEHOLDER = "{id}";
+
+    /**
+     * The text before and after the placeholder
+     */
+    final String prefix;
+    final String suffix;
+    /**
+     * The ASCII bytes of the prefix after the base's scheme and authority, and of the suffix; null if the template
+     * doesn't start with the base URL exactly as written, or isn't ASCII
+     */
+    private final byte[] pathPrefix;
+    private final byte[] pathSuffix;
+    /**
+     * The whole prefix and the suffix escaped for XML; the digits in between never need escaping
+     */
+    final String escapedPrefix;
+    final String escapedSuffix;
+
+    /**
+     * @throws IllegalArgumentException if the template doesn't hold exactly one placeholder
+     * @throws org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException if the template isn't a URL
+     *                                                                            under the base URL
+     */
+    UrlTemplate(String template, BaseUrl base, URL baseUrl) {
+        int at = template.indexOf(PLACEHOLDER);
+        if (at < 0 || template.indexOf(PLACEHOLDER, at + 1) >= 0)
+            throw new IllegalArgumentException("URL template must contain " + PLACEHOLDER + " exactly once: " + template);
+        prefix = template.substring(0, at);
+        suffix = template.substring(at + PLACEHOLDER.length());
+        UrlUtils.checkUrl(UrlUtils.toUrl(prefix + 0 + suffix), baseUrl);
+        escapedPrefix = UrlUtils.escapeXml(prefix);
+        escapedSuffix = UrlUtils.escapeXml(suffix);
+
+        int start = base.pathStart(template);
+        if (start >= 0 && start <= at && isAscii(template)) {
+            pathPrefix = ascii(template, start, at);
+            pathSuffix = ascii(suffix, 0, suffix.length());
+        } else {
+            pathPrefix = null;
+            pathSuffix = null;
+        }
+    }
+
+    /**
+     * Whether the URLs can be kept relative to the base URL, and rendered from the escaped prefix and suffix
+     */
+    boolean isRelative() {
+        return pathPrefix != null;
+    }
+
+    /**
+     * The most bytes {@link #writePath(long, byte[], int)} writes
+     */
+    int maxPathLength() {
+        return pathPrefix.length + 20 + pathSuffix.length;
+    }
+
+    /**
+     * Writes the path of the URL of an id, after the base's scheme and authority, as ASCII
+     *
+     * @return the offset after the last byte written
+     */
+    int writePath(long id, byte[] bytes, int offset) {
+        System.arraycopy(pathPrefix, 0, bytes, offset, pathPrefix.length);
+        offset = writeDigits(id, bytes, offset + pathPrefix.length);
+        System.arraycopy(pathSuffix, 0, bytes, offset, pathSuffix.length);
+        return offset + pathSuffix.length;
+    }
+
+    /**
+     * The URL of an id; only for the rare URLs that aren't kept relative, and for error messages
+     */
+    String toUrl(long id) {
+        return prefix + id + suffix;
+    }
+
+    private static int writeDigits(long id, byte[] bytes, int offset) {
+        if (id < 0) {
+            bytes[offset++] = '-';
+        } else {
+            id = -id; // count in negatives, so Long.MIN_VALUE needs no special case
+        }
+        int digits = 1;
+        for (long rest = id / 10; rest != 0; rest /= 10) digits++;
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' - id % 10);
+            id /= 10;
+        }
+        return end;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,321 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser.Granularity;
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+
+/**
+ * The pending URLs of a web sitemap, kept in parallel primitive arrays instead of one object graph each: the locs
+ * as bytes in one arena, the lastmod as a {@code long}, the priority in tenths and the changefreq as an ordinal,
+ * a byte each. URLs are rendered straight from the columns.
+ *
+ * <p>A URL whose values the columns can't reproduce exactly, such as a priority of 0.25, an
+ * {@link java.time.OffsetDateTime} lastmod or a subclass of {@link WebSitemapUrl}, is kept as it is and rendered
+ * by the generator's renderer.</p>
+ *
+ * @param <U> the type of URL the renderer renders, {@link WebSitemapUrl} itself
+ */
+final class WebUrlColumns<U extends ISitemapUrl> implements UrlBuffer<U> {
+    private static final byte RELATIVE = 1;
+    private static final byte ASCII = 2;
+    private static final byte OBJECT = 4;
+
+    private static final byte NO_LAST_MOD = 0;
+    /**
+     * A {@link LocalDate}, kept as its epoch day
+     */
+    private static final byte DATE = 1;
+    /**
+     * A {@link LocalDateTime}, kept as epoch milliseconds as if it were in UTC
+     */
+    private static final byte LOCAL_DATE_TIME = 2;
+    /**
+     * An {@link Instant} or {@link ZonedDateTime}, kept as epoch milliseconds; the formatter only uses their
+     * instant, converted to its own zone
+     */
+    private static final byte INSTANT = 3;
+
+    /**
+     * Years 1 and 9999 in epoch seconds, the range the columns keep; others are rare enough to keep as objects
+     */
+    private static final long MIN_EPOCH_SECOND = -62135596800L;
+    private static final long MAX_EPOCH_SECOND = 253402300799L;
+
+    private static final ChangeFreq[] CHANGE_FREQS = ChangeFreq.values();
+    private static final String[] PRIORITIES = new String[11];
+
+    static {
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            PRIORITIES[i] = Double.toString(i / 10.0);
+        }
+    }
+
+    private final BaseUrl base;
+    private final ISitemapUrlRenderer<U> renderer;
+    private byte[] arena = new byte[4096];
+    private int arenaSize = 0;
+    private int[] locEnds = new int[256];
+    private byte[] flags = new byte[256];
+    private byte[] lastModKinds = new byte[256];
+    private long[] lastMods = new long[256];
+    private byte[] priorities = new byte[256];
+    private byte[] changeFreqs = new byte[256];
+    private ISitemapUrl[] objects;
+    private int size = 0;
+
+    WebUrlColumns(BaseUrl base, ISitemapUrlRenderer<U> renderer) {
+        this.base = base;
+        this.renderer = renderer;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(U url) {
+        if (url instanceof WebSitemapUrl web) {
+            addWebUrl(web);
+        } else {
+            addObject(url);
+        }
+    }
+
+    @Override
+    public void addWebUrl(WebSitemapUrl url) {
+        if (size == flags.length) grow();
+        int i = size;
+        Class<?> type = url.getClass();
+        if ((type != WebSitemapUrl.class && type != RelativeWebSitemapUrl.class)
+                || !storeLastMod(i, url.getLastMod()) || !storePriority(i, url.getPriority())) {
+            addObject(url);
+            return;
+        }
+        changeFreqs[i] = url.getChangeFreq() == null ? -1 : (byte) url.getChangeFreq().ordinal();
+
+        byte flag;
+        if (url instanceof RelativeWebSitemapUrl relative && relative.isUnder(base)) {
+            appendToArena(relative.path());
+            flag = RELATIVE | ASCII;
+        } else {
+            byte[] loc = url.getUrl().toString().getBytes(StandardCharsets.UTF_8);
+            appendToArena(loc);
+            flag = isAscii(loc) ? ASCII : 0;
+        }
+        flags[i] = flag;
+        locEnds[i] = arenaSize;
+        size++;
+    }
+
+    /**
+     * Keeps a URL the columns can't reproduce as it is, to be rendered by the renderer
+     */
+    private void addObject(ISitemapUrl url) {
+        if (size == flags.length) grow();
+        if (objects == null) objects = new ISitemapUrl[flags.length];
+        objects[size] = url;
+        flags[size] = OBJECT;
+        locEnds[size] = arenaSize;
+        size++;
+    }
+
+    /**
+     * Adds a URL from its parts, without any intermediate objects
+     *
+     * @param lastModEpochMillis {@link Long#MIN_VALUE} for none
+     * @param lastModGranularity a date is kept as its epoch day, a local time as if it were in UTC
+     * @param priority           NaN for none
+     * @return false, having added nothing, if the columns can't hold the URL exactly: it isn't under the base URL
+     * or isn't ASCII, or the priority isn't in whole tenths
+     */
+    @Override
+    public boolean addWebUrl(CharSequence loc, long lastModEpochMillis, Granularity lastModGranularity,
+                             ChangeFreq changeFreq, float priority) {
+        int start = base.pathStart(loc);
+        if (start < 0) return false;
+        byte tenths = -1;
+        if (!Float.isNaN(priority)) {
+            int rounded = Math.round(priority * 10);
+            if (rounded < 0 || rounded > 10 || (float) (rounded / 10.0) != priority) return false;
+            tenths = (byte) rounded;
+        }
+
+        int length = loc.length() - start;
+        if (arena.length - arenaSize < length) {
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + length, arena.length * 2));
+        }
+        for (int i = 0; i < length; i++) {
+            char c = loc.charAt(start + i);
+            if (c >= 0x80) return false;
+            arena[arenaSize + i] = (byte) c;
+        }
+
+        arenaSize += length;
+        if (lastModEpochMillis == Long.MIN_VALUE) {
+            addRelative(NO_LAST_MOD, 0, tenths, changeFreq);
+        } else {
+            switch (lastModGranularity) {
+                case DATE -> addRelative(DATE, Math.floorDiv(lastModEpochMillis, 86_400_000L), tenths, changeFreq);
+                case LOCAL_DATE_TIME -> addRelative(LOCAL_DATE_TIME, lastModEpochMillis, tenths, changeFreq);
+                case INSTANT -> addRelative(INSTANT, lastModEpochMillis, tenths, changeFreq);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the URL a template gives for an id, with the digits written straight into the arena
+     *
+     * @param template           a template under the base URL, all ASCII
+     * @param lastModEpochMillis rendered like an {@link Instant}, or {@link Long#MIN_VALUE} for none
+     */
+    @Override
+    public boolean add(UrlTemplate template, long id, long lastModEpochMillis) {
+        if (arena.length - arenaSize < template.maxPathLength()) {
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + template.maxPathLength(), arena.length * 2));
+        }
+        arenaSize = template.writePath(id, arena, arenaSize);
+        addRelative(lastModEpochMillis == Long.MIN_VALUE ? NO_LAST_MOD : INSTANT, lastModEpochMillis, (byte) -1, null);
+        return true;
+    }
+
+    /**
+     * Fills in the columns of a URL whose path was just appended to the arena
+     *
+     * @param lastMod the lastmod as its kind keeps it
+     */
+    private void addRelative(byte lastModKind, long lastMod, byte tenths, ChangeFreq changeFreq) {
+        if (size == flags.length) grow();
+        int i = size;
+        locEnds[i] = arenaSize;
+        flags[i] = RELATIVE | ASCII;
+        lastModKinds[i] = lastModKind;
+        lastMods[i] = lastMod;
+        priorities[i] = tenths;
+        changeFreqs[i] = changeFreq == null ? -1 : (byte) changeFreq.ordinal();
+        size++;
+    }
+
+    private boolean storeLastMod(int i, Temporal lastMod) {
+        byte kind;
+        long value;
+        if (lastMod == null) {
+            kind = NO_LAST_MOD;
+            value = 0;
+        } else if (lastMod.getClass() == LocalDate.class) {
+            kind = DATE;
+            value = ((LocalDate) lastMod).toEpochDay();
+        } else if (lastMod.getClass() == LocalDateTime.class) {
+            long epochSecond = ((LocalDateTime) lastMod).toEpochSecond(ZoneOffset.UTC);
+            if (epochSecond < MIN_EPOCH_SECOND || epochSecond > MAX_EPOCH_SECOND) return false;
+            kind = LOCAL_DATE_TIME;
+            value = epochSecond * 1000 + ((LocalDateTime) lastMod).getNano() / 1_000_000;
+        } else if (lastMod.getClass() == Instant.class || lastMod.getClass() == ZonedDateTime.class) {
+            Instant instant = lastMod instanceof Instant ? (Instant) lastMod : ((ZonedDateTime) lastMod).toInstant();
+            if (instant.getEpochSecond() < MIN_EPOCH_SECOND || instant.getEpochSecond() > MAX_EPOCH_SECOND) return false;
+            kind = INSTANT;
+            value = instant.toEpochMilli();
+        } else {
+            return false;
+        }
+        lastModKinds[i] = kind;
+        lastMods[i] = value;
+        return true;
+    }
+
+    private boolean storePriority(int i, Double priority) {
+        if (priority == null) {
+            priorities[i] = -1;
+            return true;
+        }
+        long tenths = Math.round(priority * 10);
+        if (tenths < 0 || tenths > 10 || tenths / 10.0 != priority) return false;
+        priorities[i] = (byte) tenths;
+        return true;
+    }
+
+    private void appendToArena(byte[] bytes) {
+        if (arena.length - arenaSize < bytes.length) {
+            arena = Arrays.copyOf(arena, Math.max(arenaSize + bytes.length, arena.length * 2));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+        arenaSize += bytes.length;
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        int capacity = flags.length * 2;
+        locEnds = Arrays.copyOf(locEnds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        lastModKinds = Arrays.copyOf(lastModKinds, capacity);
+        lastMods = Arrays.copyOf(lastMods, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        changeFreqs = Arrays.copyOf(changeFreqs, capacity);
+        if (objects != null) objects = Arrays.copyOf(objects, capacity);
+    }
+
+    @Override
+    public CharSequence loc(int i) {
+        if ((flags[i] & OBJECT) != 0) return objects[i].getUrl().toString();
+        int start = i == 0 ? 0 : locEnds[i - 1];
+        int length = locEnds[i] - start;
+        if ((flags[i] & ASCII) == 0) return new String(arena, start, length, StandardCharsets.UTF_8);
+        return new AsciiLoc((flags[i] & RELATIVE) != 0 ? base.origin : "", arena, start, length);
+    }
+
+    private Temporal lastMod(int i) {
+        long value = lastMods[i];
+        return switch (lastModKinds[i]) {
+            case DATE -> LocalDate.ofEpochDay(value);
+            case LOCAL_DATE_TIME -> LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1000), Math.floorMod(value, 1000) * 1_000_000, ZoneOffset.UTC);
+            case INSTANT -> Instant.ofEpochMilli(value);
+            default -> null;
+        };
+    }
+
+    /**
+     * Renders the URL at the given index exactly as the web sitemap renderer renders the URL that was added
+     */
+    @Override
+    public void render(int i, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+        if ((flags[i] & OBJECT) != 0) {
+            ObjectUrls.render(renderer, objects[i], sb, dateTimeFormatter);
+            return;
+        }
+        WebUrlMarkup.startUrl(sb);
+        UrlUtils.escapeXml(loc(i), sb);
+        boolean instant = lastModKinds[i] == INSTANT;
+        WebUrlMarkup.endLoc(sb, instant ? null : lastMod(i), instant ? lastMods[i] : Long.MIN_VALUE,
+                changeFreqs[i] < 0 ? null : CHANGE_FREQS[changeFreqs[i]],
+                priorities[i] < 0 ? null : PRIORITIES[priorities[i]], dateTimeFormatter);
+        WebUrlMarkup.endUrl(sb);
+    }
+
+    /**
+     * Empties the buffer, keeping its arrays for the next URLs
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        arenaSize = 0;
+        objects = null;
+    }
+}
@@ -0,0 +1,68 @@
+package org.psloboda.sitemapgenerator.generators;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
+
+import java.time.temporal.Temporal;
+
+/**
+ * The markup of the standard elements of a web sitemap {@code <url>}, written from plain values. Every path that
+ * renders a web URL goes through it: {@link ISitemapUrlRenderer#openUrl} for URL objects, and the buffers that
+ * render URLs straight from their parts, so they all give the same text.
+ *
+ * <p>The loc is appended by the caller, escaped for XML, between {@link #startUrl(StringBuilder)} and
+ * {@link #endLoc}, so each can escape it from whatever it holds without building a string first.</p>
+ */
+final class WebUrlMarkup {
+
+    private WebUrlMarkup() {
+    }
+
+    /**
+     * Appends the opening {@code <url>} tag and the opening {@code <loc>} tag
+     */
+    static void startUrl(StringBuilder sb) {
+        sb.append("  <url>\n");
+        sb.append("    <loc>");
+    }
+
+    /**
+     * Closes the {@code <loc>} element and appends the lastmod, changefreq and priority elements of those given
+     *
+     * @param lastMod            the lastmod, or null to render the epoch milliseconds instead
+     * @param lastModEpochMillis rendered like an {@link java.time.Instant} when there is no lastmod object,
+     *                           {@link Long#MIN_VALUE} for none
+     * @param changeFreq         may be null
+     * @param priority           the priority as text, or null for none
+     */
+    static void endLoc(StringBuilder sb, Temporal lastMod, long lastModEpochMillis, ChangeFreq changeFreq,
+                       String priority, W3CDateTimeFormatter dateTimeFormatter) {
+        sb.append("</loc>\n");
+        if (lastMod != null) {
+            sb.append("    <lastmod>");
+            dateTimeFormatter.format(lastMod, sb);
+            sb.append("</lastmod>\n");
+        } else if (lastModEpochMillis != Long.MIN_VALUE) {
+            sb.append("    <lastmod>");
+            dateTimeFormatter.formatEpochMillis(lastModEpochMillis, sb);
+            sb.append("</lastmod>\n");
+        }
+        if (changeFreq != null) {
+            sb.append("    <changefreq>");
+            sb.append(changeFreq.toString());
+            sb.append("</changefreq>\n");
+        }
+        if (priority != null) {
+            sb.append("    <priority>");
+            sb.append(priority);
+            sb.append("</priority>\n");
+        }
+    }
+
+    /**
+     * Appends the closing {@code </url>} tag
+     */
+    static void endUrl(StringBuilder sb) {
+        sb.append("  </url>\n");
+    }
+}
@@ -94,19 +94,17 @@ public class GoogleImageSitemapGenerator extends SitemapGenerator<GoogleImageSit
         }
 
         public void render(GoogleImageSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
-            StringBuilder tagSb = new StringBuilder();
-
+            openUrl(url, sb, dateTimeFormatter);
             for (Image image : url.getImages()) {
-                tagSb.append("    <image:image>\n");
-                renderTag(tagSb, Constants.IMAGE_NAMESPACE, "loc", image.getUrl());
-                renderTag(tagSb, Constants.IMAGE_NAMESPACE, "caption", image.getCaption());
-                renderTag(tagSb, Constants.IMAGE_NAMESPACE, "title", image.getTitle());
-                renderTag(tagSb, Constants.IMAGE_NAMESPACE, "geo_location", image.getGeoLocation());
-                renderTag(tagSb, Constants.IMAGE_NAMESPACE, "license", image.getLicense());
-                tagSb.append("    </image:image>\n");
+                sb.append("    <image:image>\n");
+                renderTag(sb, Constants.IMAGE_NAMESPACE, "loc", image.getUrl());
+                renderTag(sb, Constants.IMAGE_NAMESPACE, "caption", image.getCaption());
+                renderTag(sb, Constants.IMAGE_NAMESPACE, "title", image.getTitle());
+                renderTag(sb, Constants.IMAGE_NAMESPACE, "geo_location", image.getGeoLocation());
+                renderTag(sb, Constants.IMAGE_NAMESPACE, "license", image.getLicense());
+                sb.append("    </image:image>\n");
             }
-
-            render(url, sb, dateTimeFormatter, tagSb.toString());
+            closeUrl(sb);
         }
     }
 }
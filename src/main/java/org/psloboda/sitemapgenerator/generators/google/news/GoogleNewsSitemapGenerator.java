@@ -107,18 +107,18 @@ public class GoogleNewsSitemapGenerator extends SitemapGenerator<GoogleNewsSitem
         }
 
         public void render(GoogleNewsSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
-            StringBuilder tagSb = new StringBuilder();
-            tagSb.append("    <news:news>\n");
-            tagSb.append("      <news:publication>\n");
-            renderSubTag(tagSb, "news", "name", url.getPublication().getName());
-            renderSubTag(tagSb, "news", "language", url.getPublication().getLanguage());
-            tagSb.append("      </news:publication>\n");
-            renderTag(tagSb, "news", "genres", url.getGenres());
-            renderTag(tagSb, "news", "publication_date", dateTimeFormatter.format(url.getPublicationDate()));
-            renderTag(tagSb, "news", "title", url.getTitle());
-            renderTag(tagSb, "news", "keywords", url.getKeywords());
-            tagSb.append("    </news:news>\n");
-            render(url, sb, dateTimeFormatter, tagSb.toString());
+            openUrl(url, sb, dateTimeFormatter);
+            sb.append("    <news:news>\n");
+            sb.append("      <news:publication>\n");
+            renderSubTag(sb, "news", "name", url.getPublication().getName());
+            renderSubTag(sb, "news", "language", url.getPublication().getLanguage());
+            sb.append("      </news:publication>\n");
+            renderTag(sb, "news", "genres", url.getGenres());
+            renderTag(sb, "news", "publication_date", url.getPublicationDate(), dateTimeFormatter);
+            renderTag(sb, "news", "title", url.getTitle());
+            renderTag(sb, "news", "keywords", url.getKeywords());
+            sb.append("    </news:news>\n");
+            closeUrl(sb);
         }
 
     }
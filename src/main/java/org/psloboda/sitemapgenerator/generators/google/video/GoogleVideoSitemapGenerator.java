@@ -95,40 +95,37 @@ public class GoogleVideoSitemapGenerator extends SitemapGenerator<GoogleVideoSit
         }
 
         public void render(GoogleVideoSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
-            StringBuilder tagSb = new StringBuilder();
-            tagSb.append("    <video:video>\n");
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "content_loc", url.getContentUrl());
+            openUrl(url, sb, dateTimeFormatter);
+            sb.append("    <video:video>\n");
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "content_loc", url.getContentUrl());
 
             if (url.getPlayerUrl() != null) {
-                tagSb.append("      <video:player_loc allow_embed=\"");
-                tagSb.append(url.getAllowEmbed());
-                tagSb.append("\">");
-                tagSb.append(url.getPlayerUrl());
-                tagSb.append("</video:player_loc>\n");
+                sb.append("      <video:player_loc allow_embed=\"");
+                sb.append(url.getAllowEmbed());
+                sb.append("\">");
+                sb.append(url.getPlayerUrl());
+                sb.append("</video:player_loc>\n");
             }
 
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "thumbnail_loc", url.getThumbnailUrl());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "title", url.getTitle());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "description", url.getDescription());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "rating", url.getRating());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "view_count", url.getViewCount());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "thumbnail_loc", url.getThumbnailUrl());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "title", url.getTitle());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "description", url.getDescription());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "rating", url.getRating());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "view_count", url.getViewCount());
 
-            if (url.getPublicationDate() != null) {
-                renderTag(tagSb, Constants.VIDEO_NAMESPACE, "publication_date", dateTimeFormatter.format(url.getPublicationDate()));
-            }
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "publication_date", url.getPublicationDate(), dateTimeFormatter);
 
             if (url.getTags() != null) {
                 for (String tag : url.getTags()) {
-                    renderTag(tagSb, Constants.VIDEO_NAMESPACE, "tag", tag);
+                    renderTag(sb, Constants.VIDEO_NAMESPACE, "tag", tag);
                 }
             }
 
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "category", url.getCategory());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "family_friendly", url.getFamilyFriendly());
-            renderTag(tagSb, Constants.VIDEO_NAMESPACE, "duration", url.getDurationInSeconds());
-            tagSb.append("    </video:video>\n");
-
-            render(url, sb, dateTimeFormatter, tagSb.toString());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "category", url.getCategory());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "family_friendly", url.getFamilyFriendly());
+            renderTag(sb, Constants.VIDEO_NAMESPACE, "duration", url.getDurationInSeconds());
+            sb.append("    </video:video>\n");
+            closeUrl(sb);
         }
     }
 }
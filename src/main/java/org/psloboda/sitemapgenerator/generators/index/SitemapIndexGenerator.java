@@ -4,6 +4,7 @@ import org.psloboda.sitemapgenerator.utils.UrlUtils;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
 import org.psloboda.sitemapgenerator.generators.SitemapValidator;
+import org.psloboda.sitemapgenerator.sinks.StagingSitemapSink;
 import org.xml.sax.SAXException;
 
 import java.io.File;
@@ -12,6 +13,8 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.temporal.Temporal;
 import java.util.ArrayList;
@@ -30,6 +33,7 @@ public class SitemapIndexGenerator {
     private final W3CDateTimeFormatter dateTimeFormatter;
     private final Temporal defaultLastMod;
     private final boolean autoValidate;
+    private final StagingSitemapSink staging;
     /**
      * Maximum 50,000 sitemaps per index allowed
      */
@@ -46,6 +50,7 @@ public class SitemapIndexGenerator {
         private int maxUrls = MAX_SITEMAPS_PER_INDEX;
         private Temporal defaultLastMod = LocalDate.now();
         private boolean autoValidate = false;
+        private StagingSitemapSink staging;
         // TODO GZIP?  Is that legal for a sitemap index?
 
         /**
@@ -119,6 +124,15 @@ public class SitemapIndexGenerator {
             return this;
         }
 
+        /**
+         * Write the sitemap index into the staging directory of a new generation, under the file name of
+         * {@code outFile}; it goes live along with the sitemaps when you call {@link StagingSitemapSink#publish()}
+         */
+        public Options publish(StagingSitemapSink staging) {
+            this.staging = staging;
+            return this;
+        }
+
         /**
          * Constructs a sitemap index generator configured with the options you specified
          */
@@ -149,7 +163,11 @@ public class SitemapIndexGenerator {
 
     private SitemapIndexGenerator(Options options) {
         this.baseUrl = options.baseUrl;
-        this.outFile = options.outFile;
+        if (options.staging != null) {
+            this.outFile = options.staging.getStagingDir().resolve(options.outFile.getName()).toFile();
+        } else {
+            this.outFile = options.outFile;
+        }
         this.allowEmptyIndex = options.allowEmptyIndex;
         this.maxUrls = options.maxUrls;
 
@@ -162,6 +180,7 @@ public class SitemapIndexGenerator {
         this.dateTimeFormatter = formatter;
         this.defaultLastMod = options.defaultLastMod;
         this.autoValidate = options.autoValidate;
+        this.staging = options.staging;
     }
 
     /**
@@ -269,7 +288,12 @@ public class SitemapIndexGenerator {
     public void write() {
         try {
             // TODO gzip? is that legal for a sitemap index?
-            write(new FileWriter(outFile));
+            if (staging != null) {
+                // through the sink, so the index is recorded in the manifest and linked when unchanged
+                write(new OutputStreamWriter(Channels.newOutputStream(staging.open(outFile.getName())), StandardCharsets.UTF_8));
+            } else {
+                write(new FileWriter(outFile));
+            }
         } catch (IOException e) {
             throw new SitemapGeneratorException("Problem writing sitemap index file " + outFile, e);
         }
@@ -279,9 +303,10 @@ public class SitemapIndexGenerator {
         if (!allowEmptyIndex && urls.isEmpty())
             throw new SitemapGeneratorException("No URLs added, sitemap index would be empty; you must add some URLs with addUrls");
 
-        try (out) {
-            writeSiteMap(out);
-            out.flush();
+        try {
+            try (out) {
+                writeSiteMap(out);
+            }
             if (autoValidate) SitemapValidator.validateSitemapIndex(outFile);
         } catch (SAXException e) {
             throw new SitemapGeneratorException("Problem validating sitemap index file (bug?)", e);
@@ -302,7 +327,7 @@ public class SitemapIndexGenerator {
         for (SitemapIndexUrl url : urls) {
             sb.append("  <sitemap>\n");
             sb.append("    <loc>");
-            sb.append(UrlUtils.escapeXml(url.url.toString()));
+            UrlUtils.escapeXml(url.url.toString(), sb);
             sb.append("</loc>\n");
             Temporal lastMod = url.lastMod;
 
@@ -310,7 +335,7 @@ public class SitemapIndexGenerator {
 
             if (lastMod != null) {
                 sb.append("    <lastmod>");
-                sb.append(dateTimeFormatter.format(lastMod));
+                dateTimeFormatter.format(lastMod, sb);
                 sb.append("</lastmod>\n");
             }
             sb.append("  </sitemap>\n");
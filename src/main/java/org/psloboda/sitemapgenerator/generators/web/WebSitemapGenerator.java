@@ -1,11 +1,15 @@
 package org.psloboda.sitemapgenerator.generators.web;
 
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
 import org.psloboda.sitemapgenerator.generators.*;
 import org.psloboda.sitemapgenerator.utils.UrlUtils;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser.Granularity;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 
 import java.io.File;
 import java.net.URL;
+import java.util.stream.LongStream;
 
 /**
  * Generates a regular old sitemap (USE THIS CLASS FIRST).  To configure options, use {@link #builder(URL, File)}
@@ -13,6 +17,15 @@ import java.net.URL;
  * @author Dan Fabulich
  */
 public class WebSitemapGenerator extends SitemapGenerator<WebSitemapUrl, WebSitemapGenerator> {
+    /**
+     * Pass as the lastmod to {@link #addUrl(CharSequence, long, ChangeFreq, float)} for a URL without one
+     */
+    public static final long NO_LAST_MOD = Long.MIN_VALUE;
+
+    /**
+     * Pass as the priority to {@link #addUrl(CharSequence, long, ChangeFreq, float)} for a URL without one
+     */
+    public static final float NO_PRIORITY = Float.NaN;
 
     public WebSitemapGenerator(AbstractSitemapGeneratorOptions<?> options) {
         super(options, new Renderer());
@@ -82,6 +95,77 @@ public class WebSitemapGenerator extends SitemapGenerator<WebSitemapUrl, WebSite
         this(new SitemapGeneratorOptions(baseUrl));
     }
 
+    /**
+     * Add one URL with a lastmod, changefreq and priority given as plain values, without building a
+     * {@link WebSitemapUrl} or a {@link java.time.temporal.Temporal} for it. The URL goes straight into the buffer,
+     * or into the open sitemap file when streaming; it is only parsed into a {@link URL} if it doesn't start with the
+     * base URL exactly as written, or isn't ASCII.
+     *
+     * @param loc                the URL
+     * @param lastModEpochMillis milliseconds since the epoch, rendered like an {@link java.time.Instant} lastmod,
+     *                           or {@link #NO_LAST_MOD}
+     * @param changeFreq         the changefreq, or null
+     * @param priority           from 0 to 1, or {@link #NO_PRIORITY}
+     * @return this
+     */
+    public WebSitemapGenerator addUrl(CharSequence loc, long lastModEpochMillis, ChangeFreq changeFreq, float priority) {
+        return addWebUrl(loc, lastModEpochMillis, Granularity.INSTANT, changeFreq, priority);
+    }
+
+    /**
+     * Add one URL whose lastmod is rendered at the granularity it was given with, e.g. a plain date parsed by
+     * {@link W3CDateParser#parseEpochMillis(byte[], int, int)} as a date rather than as midnight UTC
+     *
+     * @param lastModGranularity as {@link W3CDateParser#granularity(byte[], int, int)} tells it
+     * @see #addUrl(CharSequence, long, ChangeFreq, float)
+     */
+    public WebSitemapGenerator addUrl(CharSequence loc, long lastModEpochMillis, Granularity lastModGranularity,
+                                      ChangeFreq changeFreq, float priority) {
+        return addWebUrl(loc, lastModEpochMillis, lastModGranularity, changeFreq, priority);
+    }
+
+    /**
+     * Add one URL with a lastmod given in milliseconds since the epoch
+     *
+     * @see #addUrl(CharSequence, long, ChangeFreq, float)
+     */
+    public WebSitemapGenerator addUrl(CharSequence loc, long lastModEpochMillis) {
+        return addWebUrl(loc, lastModEpochMillis, Granularity.INSTANT, null, NO_PRIORITY);
+    }
+
+    /**
+     * Add the URLs a template gives for a list of ids, e.g. "https://www.example.com/product/{id}", without
+     * building a {@link WebSitemapUrl}, {@link URL} or string for any of them. Whole sitemaps' worth of ids are
+     * rendered straight from the array, by the render executor if there is one.
+     *
+     * @param template a URL under the base URL with "{id}" in it once
+     * @param ids      the ids, in the order their URLs should appear; the array isn't kept
+     * @return this
+     */
+    public WebSitemapGenerator addUrls(String template, long[] ids) {
+        return addWebUrls(template, ids, null);
+    }
+
+    /**
+     * Add the URLs a template gives for a list of ids, each with a lastmod
+     *
+     * @param lastModEpochMillis the lastmod of the URL of each id, in milliseconds since the epoch, rendered like an
+     *                           {@link java.time.Instant}, or {@link #NO_LAST_MOD}; as long as {@code ids}
+     * @see #addUrls(String, long[])
+     */
+    public WebSitemapGenerator addUrls(String template, long[] ids, long[] lastModEpochMillis) {
+        return addWebUrls(template, ids, lastModEpochMillis);
+    }
+
+    /**
+     * Add the URLs a template gives for a stream of ids, one at a time in encounter order
+     *
+     * @see #addUrls(String, long[])
+     */
+    public WebSitemapGenerator addUrls(String template, LongStream ids) {
+        return addWebUrls(template, ids);
+    }
+
     private static class Renderer implements ISitemapUrlRenderer<WebSitemapUrl> {
 
         public Class<WebSitemapUrl> getUrlClass() {
@@ -93,7 +177,8 @@ public class WebSitemapGenerator extends SitemapGenerator<WebSitemapUrl, WebSite
         }
 
         public void render(WebSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
-            render(url, sb, dateTimeFormatter, null);
+            openUrl(url, sb, dateTimeFormatter);
+            closeUrl(sb);
         }
 
     }
@@ -38,6 +38,16 @@ public class WebSitemapUrl implements ISitemapUrl {
         this.priority = null;
     }
 
+    /**
+     * For subclasses that keep the URL in a form of their own and override {@link #getUrl()}
+     */
+    protected WebSitemapUrl() {
+        this.url = null;
+        this.lastMod = null;
+        this.changeFreq = null;
+        this.priority = null;
+    }
+
     /**
      * Creates an URL with configured options
      */
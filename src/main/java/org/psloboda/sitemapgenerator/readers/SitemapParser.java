@@ -0,0 +1,237 @@
+package org.psloboda.sitemapgenerator.readers;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.generators.AbstractSitemapUrlOptions;
+import org.psloboda.sitemapgenerator.generators.google.image.GoogleImageSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.google.image.Image;
+import org.psloboda.sitemapgenerator.generators.google.news.GoogleNewsSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.google.video.GoogleVideoSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Pulls URLs out of one sitemap, or sitemap locations out of one sitemap index, with a StAX parser,
+ * so only the {@code <url>} being read is ever held in memory
+ */
+final class SitemapParser {
+    private static final String IMAGE_NAMESPACE = "http://www.google.com/schemas/sitemap-image/1.1";
+    private static final String VIDEO_NAMESPACE = "http://www.google.com/schemas/sitemap-video/1.1";
+    private static final String NEWS_NAMESPACE = "http://www.google.com/schemas/sitemap-news/0.9";
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private SitemapParser() {
+    }
+
+    /**
+     * Parses a sitemap or sitemap index, gzipped or not
+     *
+     * @param urls  receives each URL of a sitemap, in document order
+     * @param index receives the sitemap locations of a sitemap index, all at once
+     */
+    static void parse(InputStream in, Consumer<WebSitemapUrl> urls, Consumer<List<URL>> index) throws IOException, XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(decompress(in));
+        try {
+            reader.nextTag();
+            switch (reader.getLocalName()) {
+                case "urlset":
+                    while (reader.nextTag() == START_ELEMENT) {
+                        if ("url".equals(reader.getLocalName())) {
+                            urls.accept(readUrl(reader));
+                        } else {
+                            skip(reader);
+                        }
+                    }
+                    break;
+                case "sitemapindex":
+                    index.accept(readIndex(reader));
+                    break;
+                default:
+                    throw new XMLStreamException("Not a sitemap or sitemap index: <" + reader.getLocalName() + ">", reader.getLocation());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered, 64 * 1024);
+        }
+        return buffered;
+    }
+
+    private static List<URL> readIndex(XMLStreamReader reader) throws XMLStreamException {
+        List<URL> locations = new ArrayList<>();
+        while (reader.nextTag() == START_ELEMENT) {
+            if (!"sitemap".equals(reader.getLocalName())) {
+                skip(reader);
+                continue;
+            }
+            while (reader.nextTag() == START_ELEMENT) {
+                if ("loc".equals(reader.getLocalName())) {
+                    locations.add(UrlUtils.toUrl(reader.getElementText().trim()));
+                } else {
+                    skip(reader);
+                }
+            }
+        }
+        return locations;
+    }
+
+    private static WebSitemapUrl readUrl(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> fields = new HashMap<>();
+        List<Image> images = null;
+        Map<String, String> video = null;
+        List<String> videoTags = new ArrayList<>();
+        Map<String, String> news = null;
+
+        while (reader.nextTag() == START_ELEMENT) {
+            String namespace = reader.getNamespaceURI();
+            String name = reader.getLocalName();
+            if (IMAGE_NAMESPACE.equals(namespace) && "image".equals(name)) {
+                if (images == null) images = new ArrayList<>();
+                Map<String, String> image = readFields(reader, null);
+                images.add(new Image(UrlUtils.toUrl(require(image, "loc", reader)), image.get("title"),
+                        image.get("caption"), image.get("geo_location"), toUrl(image.get("license"))));
+            } else if (VIDEO_NAMESPACE.equals(namespace) && "video".equals(name)) {
+                video = readFields(reader, videoTags);
+            } else if (NEWS_NAMESPACE.equals(namespace) && "news".equals(name)) {
+                news = readFields(reader, null);
+            } else if (isSimpleField(name)) {
+                fields.put(name, reader.getElementText().trim());
+            } else {
+                skip(reader);
+            }
+        }
+
+        URL url = UrlUtils.toUrl(require(fields, "loc", reader));
+        AbstractSitemapUrlOptions<?, ?> options;
+        if (news != null) {
+            options = new GoogleNewsSitemapUrl.Options(url, W3CDateParser.parse(require(news, "publication_date", reader)),
+                    require(news, "title", reader), require(news, "name", reader), require(news, "language", reader))
+                    .keywords(news.get("keywords"))
+                    .genres(news.get("genres"));
+        } else if (video != null) {
+            options = videoOptions(url, video, videoTags, reader);
+        } else if (images != null) {
+            options = new GoogleImageSitemapUrl.Options(url).images(images);
+        } else {
+            options = new WebSitemapUrl.Options(url);
+        }
+
+        if (fields.containsKey("lastmod")) options.lastMod(W3CDateParser.parse(fields.get("lastmod")));
+        if (fields.containsKey("changefreq"))
+            options.changeFreq(ChangeFreq.valueOf(fields.get("changefreq").toUpperCase(Locale.ROOT)));
+        if (fields.containsKey("priority")) options.priority(Double.valueOf(fields.get("priority")));
+        return options.build();
+    }
+
+    private static boolean isSimpleField(String name) {
+        return "loc".equals(name) || "lastmod".equals(name) || "changefreq".equals(name) || "priority".equals(name);
+    }
+
+    private static GoogleVideoSitemapUrl.Options videoOptions(URL url, Map<String, String> video, List<String> tags,
+                                                              XMLStreamReader reader) throws XMLStreamException {
+        URL contentUrl = toUrl(video.get("content_loc"));
+        URL playerUrl = toUrl(video.get("player_loc"));
+        boolean allowEmbed = "yes".equalsIgnoreCase(video.get("allow_embed"));
+        GoogleVideoSitemapUrl.Options options;
+        if (contentUrl != null) {
+            options = new GoogleVideoSitemapUrl.Options(url, contentUrl);
+            if (playerUrl != null) options.playerUrl(playerUrl, allowEmbed);
+        } else if (playerUrl != null) {
+            options = new GoogleVideoSitemapUrl.Options(url, playerUrl, allowEmbed);
+        } else {
+            throw new XMLStreamException("<video:video> needs a content_loc or player_loc", reader.getLocation());
+        }
+
+        options.thumbnailUrl(toUrl(video.get("thumbnail_loc")))
+                .title(video.get("title"))
+                .description(video.get("description"))
+                .category(video.get("category"));
+        if (video.containsKey("rating")) options.rating(Double.valueOf(video.get("rating")));
+        if (video.containsKey("view_count")) options.viewCount(Integer.parseInt(video.get("view_count")));
+        if (video.containsKey("publication_date")) options.publicationDate(W3CDateParser.parse(video.get("publication_date")));
+        if (video.containsKey("family_friendly")) options.familyFriendly("yes".equalsIgnoreCase(video.get("family_friendly")));
+        if (video.containsKey("duration")) options.durationInSeconds(Integer.parseInt(video.get("duration")));
+        if (!tags.isEmpty()) options.tags(tags);
+        return options;
+    }
+
+    /**
+     * Reads the text of the elements nested in the current one by local name, flattening
+     * {@code <news:publication>}; attributes, like {@code allow_embed}, are read as fields too
+     *
+     * @param repeated collects the values of {@code <tag>} elements, which may occur more than once; may be null
+     */
+    private static Map<String, String> readFields(XMLStreamReader reader, List<String> repeated) throws XMLStreamException {
+        Map<String, String> fields = new HashMap<>();
+        readFields(reader, fields, repeated);
+        return fields;
+    }
+
+    private static void readFields(XMLStreamReader reader, Map<String, String> fields, List<String> repeated) throws XMLStreamException {
+        while (reader.nextTag() == START_ELEMENT) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                fields.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            String name = reader.getLocalName();
+            if ("publication".equals(name)) {
+                readFields(reader, fields, repeated);
+            } else if (repeated != null && "tag".equals(name)) {
+                repeated.add(reader.getElementText().trim());
+            } else {
+                fields.put(name, reader.getElementText().trim());
+            }
+        }
+    }
+
+    private static void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == XMLStreamReader.END_ELEMENT) depth--;
+        }
+    }
+
+    private static String require(Map<String, String> fields, String name, XMLStreamReader reader) throws XMLStreamException {
+        String value = fields.get(name);
+        if (value == null || value.isEmpty())
+            throw new XMLStreamException("Missing <" + name + ">", reader.getLocation());
+        return value;
+    }
+
+    private static URL toUrl(String url) {
+        return url == null || url.isEmpty() ? null : UrlUtils.toUrl(url);
+    }
+}
@@ -0,0 +1,309 @@
+package org.psloboda.sitemapgenerator.readers;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads existing sitemaps and sitemap indexes, gzipped or not, as a stream of URLs without loading them as a whole.
+ *
+ * <p>URLs come back as {@link WebSitemapUrl}s, or as a {@link org.psloboda.sitemapgenerator.generators.google.image.GoogleImageSitemapUrl},
+ * {@link org.psloboda.sitemapgenerator.generators.google.video.GoogleVideoSitemapUrl} or
+ * {@link org.psloboda.sitemapgenerator.generators.google.news.GoogleNewsSitemapUrl} when they carry the matching
+ * Google extension. The sitemaps of an index are read in index order, but several of them are parsed ahead on
+ * background threads; each of those buffers a bounded number of URLs, so memory use doesn't grow with the size
+ * of the sitemaps. An index may point to other indexes, up to {@link #MAX_INDEX_DEPTH} levels deep; an index
+ * that points back to one being read, or lists a sitemap that was listed before, fails the read.</p>
+ *
+ * <pre>
+ * try (SitemapReader reader = new SitemapReader();
+ *      Stream&lt;WebSitemapUrl&gt; urls = reader.read(Path.of("sitemap_index.xml"))) {
+ *     urls.forEach(url -&gt; ...);
+ * }
+ * </pre>
+ *
+ * Close the stream when you stop reading early, so the background threads stop too, and close the reader once
+ * you are done with it to shut its threads down.
+ */
+public class SitemapReader implements AutoCloseable {
+    /**
+     * How many levels of indexes may be nested, counting the one read first
+     */
+    public static final int MAX_INDEX_DEPTH = 8;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Object END = new Object();
+
+    /**
+     * Opens the sitemaps an index points to
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        InputStream open(URL location) throws IOException;
+    }
+
+    private final Resolver resolver;
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Reads the sitemaps an index points to from the directory the index is in, by file name, parsing as many
+     * sitemaps ahead as there are processors
+     */
+    public SitemapReader() {
+        this(null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param resolver    opens the sitemaps an index points to; null to read them from the directory the index is in
+     *                    by file name. An index read from a stream needs one, as it has no directory to read from
+     * @param parallelism the number of sitemaps parsed ahead at a time, per level of nested indexes
+     */
+    public SitemapReader(Resolver resolver, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        this.resolver = resolver;
+        this.parallelism = parallelism;
+        // not a fixed pool: a sitemap waiting for the reader to catch up holds its thread
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "sitemap-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads a sitemap or sitemap index file
+     *
+     * @return the URLs in document order; close it when you stop reading early
+     */
+    public Stream<WebSitemapUrl> read(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        Resolver resolver = this.resolver != null ? this.resolver : location -> Files.newInputStream(dir.resolve(fileName(location)));
+        return read(() -> Files.newInputStream(file), resolver);
+    }
+
+    /**
+     * Reads a sitemap or sitemap index from a stream, which is closed once it has been read. The sitemaps of an
+     * index are only opened through the {@link Resolver} this reader was created with; without one, reading an
+     * index fails rather than fetching whatever its locations point to.
+     *
+     * @return the URLs in document order; close it when you stop reading early
+     */
+    public Stream<WebSitemapUrl> read(InputStream in) {
+        Resolver resolver = this.resolver != null ? this.resolver : location -> {
+            throw new SitemapGeneratorException("Reading a sitemap index from a stream needs a Resolver: " + location);
+        };
+        return read(() -> in, resolver);
+    }
+
+    /**
+     * Stops the background threads; streams still being read fail once they need a sitemap that isn't parsed yet
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private Stream<WebSitemapUrl> read(Source source, Resolver resolver) {
+        UrlIterator iterator = new UrlIterator(source, resolver);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private static SitemapGeneratorException closed(Exception cause) {
+        return new SitemapGeneratorException("The sitemap reader was closed", cause);
+    }
+
+    private static String fileName(URL location) {
+        String path = location.getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @FunctionalInterface
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private record Nested(List<URL> locations) {
+    }
+
+    private record Failure(Exception cause) {
+    }
+
+    /**
+     * Parses one sitemap on a background thread into a bounded queue
+     */
+    private class Shard implements Runnable {
+        private final Source source;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean cancelled = false;
+
+        Shard(Source source) {
+            this.source = source;
+        }
+
+        @Override
+        public void run() {
+            try (InputStream in = source.open()) {
+                SitemapParser.parse(in, this::put, locations -> put(new Nested(locations)));
+                put(END);
+            } catch (CancellationException e) {
+                // the reader was closed
+            } catch (Exception e) {
+                try {
+                    put(new Failure(e));
+                } catch (CancellationException ignored) {
+                    // the reader was closed
+                }
+            }
+        }
+
+        private void put(Object item) {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) throw new CancellationException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+        Object take() {
+            try {
+                Object item;
+                while ((item = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (executor.isTerminated() && queue.isEmpty()) throw closed(null);
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SitemapGeneratorException("Interrupted while reading sitemaps", e);
+            }
+        }
+    }
+
+    /**
+     * The sitemaps of one index still to be read, and the ones being parsed ahead
+     */
+    private class Level {
+        private final Iterator<Source> pending;
+        private final ArrayDeque<Shard> window = new ArrayDeque<>();
+
+        Level(Iterator<Source> pending) {
+            this.pending = pending;
+        }
+
+        /**
+         * @return the sitemap to read from next, or null when this index is done
+         */
+        Shard current() {
+            while (window.size() < parallelism && pending.hasNext()) {
+                Shard shard = new Shard(pending.next());
+                try {
+                    executor.execute(shard);
+                } catch (RejectedExecutionException e) {
+                    throw closed(e);
+                }
+                window.add(shard);
+            }
+            return window.peek();
+        }
+    }
+
+    private class UrlIterator implements Iterator<WebSitemapUrl> {
+        private final Resolver resolver;
+        private final ArrayDeque<Level> levels = new ArrayDeque<>();
+        private final Set<String> opened = new HashSet<>();
+        private WebSitemapUrl next;
+
+        UrlIterator(Source source, Resolver resolver) {
+            this.resolver = resolver;
+            levels.push(new Level(List.of(source).iterator()));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !levels.isEmpty()) {
+                Level level = levels.peek();
+                Shard shard = level.current();
+                if (shard == null) {
+                    levels.pop();
+                    continue;
+                }
+                Object item = shard.take();
+                if (item instanceof WebSitemapUrl url) {
+                    next = url;
+                } else if (item == END) {
+                    level.window.poll();
+                } else if (item instanceof Nested nested) {
+                    level.window.poll();
+                    levels.push(new Level(sitemaps(nested.locations()).iterator()));
+                } else if (item instanceof Failure failure) {
+                    close();
+                    if (failure.cause() instanceof SitemapGeneratorException e) throw e;
+                    throw new SitemapGeneratorException("Problem reading sitemap", failure.cause());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public WebSitemapUrl next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            WebSitemapUrl url = next;
+            next = null;
+            return url;
+        }
+
+        /**
+         * Each sitemap may only be listed once across all indexes read, which stops an index that points to
+         * itself, directly or not, from being read forever; the depth limit bounds the sitemaps parsed ahead, up to
+         * {@code parallelism} per level
+         */
+        private List<Source> sitemaps(List<URL> locations) {
+            if (levels.size() > MAX_INDEX_DEPTH) {
+                close();
+                throw new SitemapGeneratorException("Sitemap indexes nested more than " + MAX_INDEX_DEPTH + " levels deep: " + locations);
+            }
+            for (URL location : locations) {
+                // not a Set<URL>: URL.equals resolves host names
+                if (!opened.add(location.toExternalForm())) {
+                    close();
+                    throw new SitemapGeneratorException("Sitemap listed more than once by the indexes: " + location);
+                }
+            }
+            return locations.stream().<Source>map(location -> () -> resolver.open(location)).toList();
+        }
+
+        void close() {
+            for (Level level : levels) {
+                for (Shard shard : level.window) {
+                    shard.cancelled = true;
+                }
+            }
+            levels.clear();
+        }
+    }
+}
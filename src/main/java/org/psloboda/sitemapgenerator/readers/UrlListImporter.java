@@ -0,0 +1,715 @@
+package org.psloboda.sitemapgenerator.readers;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser;
+import org.psloboda.sitemapgenerator.utils.W3CDateParser.Granularity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads URLs from a flat export into a generator: one URL per line, CSV or JSON lines.
+ *
+ * <p>The file is memory-mapped and cut into chunks at line boundaries, which are parsed on an executor while
+ * the URLs of earlier chunks are added to the generator, in file order, on the calling thread. Lines that can't
+ * be parsed, or whose URL isn't under the generator's base URL, are handed to the {@link ErrorSink} and skipped;
+ * the import goes on. A failure of the generator itself, such as a sitemap that can't be written, ends the
+ * import.</p>
+ *
+ * <p>Fields are parsed straight from the bytes of each line: the lastmod with
+ * {@link W3CDateParser#parseEpochMillis(byte[], int, int)}, keeping its granularity, and the loc checked with
+ * {@link WebSitemapGenerator#checkUrl(CharSequence)}, which only parses URLs that don't start with the base URL as
+ * written. URLs are added through
+ * {@link WebSitemapGenerator#addUrl(CharSequence, long, Granularity, ChangeFreq, float)}, so a good line costs no
+ * objects of its own, unless its priority isn't in whole tenths; such a URL is built into a {@link WebSitemapUrl}
+ * to keep the priority exact.</p>
+ *
+ * <pre>
+ * long added = new UrlListImporter(UrlListImporter.Format.CSV)
+ *         .errorSink((line, text, reason) -&gt; log.warn(line + ": " + reason))
+ *         .importUrls(Path.of("urls.csv"), wsg);
+ * </pre>
+ */
+public class UrlListImporter {
+    /**
+     * 8MB of input per unit of work
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final String[] CSV_COLUMNS = {"loc", "lastmod", "changefreq", "priority"};
+    private static final ChangeFreq[] CHANGE_FREQS = ChangeFreq.values();
+
+    /**
+     * The layout of the input file; every format is read as UTF-8
+     */
+    public enum Format {
+        /**
+         * One URL per line; blank lines and lines starting with '#' are skipped
+         */
+        TEXT,
+        /**
+         * Comma-separated loc, lastmod, changefreq and priority columns, of which only loc is required;
+         * fields may be quoted. A first line starting with "loc" is taken to be a header and skipped.
+         */
+        CSV,
+        /**
+         * One JSON object per line with "loc" and optionally "lastmod", "changefreq" and "priority"
+         */
+        JSONL
+    }
+
+    /**
+     * Receives the lines that were skipped
+     */
+    @FunctionalInterface
+    public interface ErrorSink {
+        /**
+         * @param lineNumber the 1-based line number in the file
+         * @param line       the text of the line
+         * @param reason     why the line was skipped
+         */
+        void badLine(long lineNumber, String line, String reason);
+    }
+
+    private final Format format;
+    private ErrorSink errorSink = (lineNumber, line, reason) -> {
+    };
+    private Executor executor = ForkJoinPool.commonPool();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public UrlListImporter(Format format) {
+        if (format == null) throw new NullPointerException("format may not be null");
+        this.format = format;
+    }
+
+    /**
+     * Where to report skipped lines; by default they are dropped silently
+     */
+    public UrlListImporter errorSink(ErrorSink errorSink) {
+        if (errorSink == null) throw new NullPointerException("errorSink may not be null");
+        this.errorSink = errorSink;
+        return this;
+    }
+
+    /**
+     * Parse chunks on this executor; the common fork/join pool by default
+     */
+    public UrlListImporter executor(Executor executor) {
+        if (executor == null) throw new NullPointerException("executor may not be null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * The approximate number of bytes parsed as one unit of work; chunks end on a line boundary
+     */
+    public UrlListImporter chunkSize(int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Adds every valid URL in the file to the generator, in file order
+     *
+     * @return the number of URLs added, not counting those the generator skipped as duplicates
+     * @throws SitemapGeneratorException if the file can't be read or the generator fails, e.g. to write a sitemap
+     */
+    public long importUrls(Path file, WebSitemapGenerator generator) {
+        int maxPending = executor instanceof ForkJoinPool pool ? pool.getParallelism() + 1 : Runtime.getRuntime().availableProcessors() + 1;
+        ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+        long urlCount = generator.getUrlCount();
+        long lineNumber = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size || !pending.isEmpty()) {
+                if (start < size && pending.size() < maxPending) {
+                    long end = lineBoundary(channel, Math.min(start + chunkSize, size), size);
+                    long chunkStart = start;
+                    pending.add(CompletableFuture.supplyAsync(() -> parseChunk(channel, chunkStart, end, generator), executor));
+                    start = end;
+                    continue;
+                }
+                Chunk chunk = join(pending.poll());
+                chunk.addTo(generator, errorSink, lineNumber);
+                lineNumber += chunk.lineCount;
+            }
+        } catch (IOException e) {
+            throw new SitemapGeneratorException("Problem reading " + file, e);
+        }
+        return generator.getUrlCount() - urlCount;
+    }
+
+    /**
+     * The offset just past the first line break at or after the given offset, or the end of the file
+     */
+    private static long lineBoundary(FileChannel channel, long offset, long size) throws IOException {
+        if (offset >= size) return size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = offset - 1;
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) return size;
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') return position + i + 1;
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    private Chunk parseChunk(FileChannel channel, long start, long end, WebSitemapGenerator generator) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LineParser parser = new LineParser(generator);
+        Chunk chunk = new Chunk();
+        int lineStart = 0;
+        int limit = buffer.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && buffer.get(i) != '\n') continue;
+            if (i == limit && lineStart == limit) break;
+            int length = i - lineStart;
+            if (length > 0 && buffer.get(lineStart + length - 1) == '\r') length--;
+            int offset = start == 0 && chunk.lineCount == 0 && length >= 3 && buffer.get(0) == (byte) 0xef
+                    && buffer.get(1) == (byte) 0xbb && buffer.get(2) == (byte) 0xbf ? 3 : 0;
+            chunk.lineCount++;
+            try {
+                parser.parse(buffer, lineStart + offset, length - offset, start == 0 && chunk.lineCount == 1, chunk);
+            } catch (RuntimeException e) {
+                byte[] text = new byte[length - offset];
+                buffer.get(lineStart + offset, text);
+                chunk.badLine(chunk.lineCount, new String(text, StandardCharsets.UTF_8),
+                        e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+            lineStart = i + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses one line at a time in a scratch copy of its bytes, unescaping quoted fields in place, so a line
+     * costs no objects unless it is bad or can only be added as a {@link WebSitemapUrl}
+     */
+    private final class LineParser {
+        private static final int LOC = 0;
+        private static final int LAST_MOD = 1;
+        private static final int CHANGE_FREQ = 2;
+        private static final int PRIORITY = 3;
+
+        private final WebSitemapGenerator generator;
+        private final AsciiChars ascii = new AsciiChars();
+        private byte[] line = new byte[256];
+        private int end;
+        private int position;
+        /**
+         * The end of the text the last {@link #string()} unescaped
+         */
+        private int unescapedEnd;
+        /**
+         * The start and end of each column in {@link #line}, or -1 if it is missing
+         */
+        private final int[] starts = new int[CSV_COLUMNS.length];
+        private final int[] ends = new int[CSV_COLUMNS.length];
+
+        LineParser(WebSitemapGenerator generator) {
+            this.generator = generator;
+        }
+
+        /**
+         * Adds the URL of a line to the chunk, or nothing if the line holds none
+         *
+         * @throws RuntimeException if the line is bad
+         */
+        void parse(ByteBuffer buffer, int from, int length, boolean first, Chunk chunk) {
+            if (line.length < length) line = new byte[Math.max(length, line.length * 2)];
+            buffer.get(from, line, 0, length);
+            int start = 0;
+            end = length;
+            while (start < end && line[start] <= ' ' && line[start] >= 0) start++;
+            while (end > start && line[end - 1] <= ' ' && line[end - 1] >= 0) end--;
+            if (start == end) return;
+            Arrays.fill(starts, -1);
+            Arrays.fill(ends, -1);
+            position = start;
+            switch (format) {
+                case TEXT -> {
+                    if (line[start] == '#') return;
+                    starts[LOC] = start;
+                    ends[LOC] = end;
+                }
+                case CSV -> {
+                    parseCsv();
+                    if (first && is(LOC, "loc")) return;
+                }
+                case JSONL -> parseJson();
+            }
+            addTo(chunk);
+        }
+
+        /**
+         * Checks everything the generator would reject the line for, so that only its own failures are left
+         */
+        private void addTo(Chunk chunk) {
+            if (isEmpty(LOC)) throw new IllegalArgumentException("No loc");
+            int locStart = starts[LOC];
+            int locEnd = ends[LOC];
+            boolean isAscii = isAscii(locStart, locEnd);
+            if (isAscii) {
+                generator.checkUrl(ascii.of(line, locStart, locEnd - locStart));
+            } else {
+                generator.checkUrl(new String(line, locStart, locEnd - locStart, StandardCharsets.UTF_8));
+            }
+
+            long lastMod = WebSitemapGenerator.NO_LAST_MOD;
+            Granularity granularity = null;
+            if (!isEmpty(LAST_MOD)) {
+                lastMod = W3CDateParser.parseEpochMillis(line, starts[LAST_MOD], ends[LAST_MOD]);
+                granularity = W3CDateParser.granularity(line, starts[LAST_MOD], ends[LAST_MOD]);
+            }
+            ChangeFreq changeFreq = null;
+            if (!isEmpty(CHANGE_FREQ)) {
+                for (ChangeFreq value : CHANGE_FREQS) {
+                    if (is(CHANGE_FREQ, value.name())) changeFreq = value;
+                }
+                if (changeFreq == null) throw new IllegalArgumentException("Unknown changefreq: " + text(CHANGE_FREQ));
+            }
+            float priority = WebSitemapGenerator.NO_PRIORITY;
+            if (!isEmpty(PRIORITY)) {
+                int tenths = tenths(starts[PRIORITY], ends[PRIORITY]);
+                if (tenths < 0) {
+                    // not a plain decimal in whole tenths; rare enough to be added as an object, at full precision
+                    double exact = Double.parseDouble(text(PRIORITY));
+                    checkPriority(exact);
+                    WebSitemapUrl url = new WebSitemapUrl.Options(new String(line, locStart, locEnd - locStart, StandardCharsets.UTF_8))
+                            .lastMod(granularity == null ? null : W3CDateParser.parse(text(LAST_MOD)))
+                            .changeFreq(changeFreq)
+                            .priority(exact)
+                            .build();
+                    chunk.add(url);
+                    return;
+                }
+                checkPriority(tenths / 10.0);
+                priority = (float) (tenths / 10.0);
+            }
+            chunk.add(line, locStart, locEnd, isAscii, lastMod, granularity, changeFreq, priority);
+        }
+
+        private void checkPriority(double priority) {
+            if (!(priority >= 0 && priority <= 1))
+                throw new IllegalArgumentException("Priority must be from 0 to 1: " + priority);
+        }
+
+        /**
+         * The value of a plain decimal such as "1", "0.5" or "0.50" in tenths
+         *
+         * @return -1 if the text isn't a plain decimal, has more than 9 digits or isn't in whole tenths
+         */
+        private int tenths(int from, int to) {
+            long digits = 0;
+            int count = 0;
+            int scale = -1;
+            for (int i = from; i < to; i++) {
+                byte b = line[i];
+                if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else if (b >= '0' && b <= '9' && ++count <= 9) {
+                    digits = digits * 10 + (b - '0');
+                    if (scale >= 0) scale++;
+                } else {
+                    return -1;
+                }
+            }
+            if (count == 0) return -1;
+            if (scale < 0) scale = 0;
+            for (; scale > 1; scale--) {
+                if (digits % 10 != 0) return -1;
+                digits /= 10;
+            }
+            long tenths = scale == 1 ? digits : digits * 10;
+            return tenths > Integer.MAX_VALUE ? -1 : (int) tenths;
+        }
+
+        private void parseCsv() {
+            int column = 0;
+            while (true) {
+                int start = position;
+                int write = position;
+                if (position < end && line[position] == '"') {
+                    position++;
+                    while (true) {
+                        if (position >= end) throw new IllegalArgumentException("Unterminated quoted field");
+                        byte b = line[position++];
+                        if (b != '"') {
+                            line[write++] = b;
+                        } else if (position < end && line[position] == '"') {
+                            line[write++] = '"';
+                            position++;
+                        } else {
+                            break;
+                        }
+                    }
+                } else {
+                    while (position < end && line[position] != ',') position++;
+                    write = position;
+                }
+                if (column >= CSV_COLUMNS.length) throw new IllegalArgumentException("More than " + CSV_COLUMNS.length + " columns");
+                while (start < write && line[start] <= ' ' && line[start] >= 0) start++;
+                while (write > start && line[write - 1] <= ' ' && line[write - 1] >= 0) write--;
+                starts[column] = start;
+                ends[column++] = write;
+                if (position >= end) return;
+                if (line[position] != ',') throw new IllegalArgumentException("Expected ',' at column " + (position + 1));
+                position++;
+            }
+        }
+
+        /**
+         * Parses a flat JSON object; nested values are rejected, keys other than the columns ignored
+         */
+        private void parseJson() {
+            expect('{');
+            if (peek() == '}') {
+                next();
+            } else {
+                while (true) {
+                    int keyStart = string();
+                    int column = -1;
+                    for (int i = 0; i < CSV_COLUMNS.length; i++) {
+                        if (equalsAscii(keyStart, unescapedEnd, CSV_COLUMNS[i], false)) column = i;
+                    }
+                    expect(':');
+                    value(column);
+                    byte b = next();
+                    if (b == '}') break;
+                    if (b != ',') throw new IllegalArgumentException("Expected ',' or '}' at column " + position);
+                }
+            }
+            if (peek() != 0) throw new IllegalArgumentException("Trailing characters at column " + (position + 1));
+        }
+
+        private byte peek() {
+            while (position < end && line[position] <= ' ' && line[position] >= 0) position++;
+            return position < end ? line[position] : 0;
+        }
+
+        private byte next() {
+            byte b = peek();
+            if (b == 0) throw new IllegalArgumentException("Unexpected end of line");
+            position++;
+            return b;
+        }
+
+        private void expect(char expected) {
+            byte b = next();
+            if (b != expected) throw new IllegalArgumentException("Expected '" + expected + "' at column " + position);
+        }
+
+        /**
+         * Records where a string or number is, as text, in the column; JSON null leaves it missing
+         */
+        private void value(int column) {
+            byte b = peek();
+            int start;
+            int valueEnd;
+            if (b == '"') {
+                start = string();
+                valueEnd = unescapedEnd;
+            } else {
+                start = position;
+                while (position < end && line[position] != ',' && line[position] != '}'
+                        && line[position] != ' ' && line[position] != '\t') position++;
+                valueEnd = position;
+                if (equalsAscii(start, valueEnd, "null", false)) {
+                    start = -1;
+                    valueEnd = -1;
+                } else if (start == valueEnd || b == '{' || b == '[') {
+                    throw new IllegalArgumentException("Expected a string or number at column " + (start + 1));
+                }
+            }
+            if (column < 0) return;
+            starts[column] = start;
+            ends[column] = valueEnd;
+        }
+
+        /**
+         * Unescapes a string in place, from just after its opening quote; {@link #unescapedEnd} is set to the end
+         * of the text, and the position to just past the closing quote
+         *
+         * @return the start of the text
+         */
+        private int string() {
+            expect('"');
+            int start = position;
+            int write = position;
+            while (true) {
+                if (position >= end) throw new IllegalArgumentException("Unterminated string");
+                byte b = line[position++];
+                if (b == '"') {
+                    unescapedEnd = write;
+                    return start;
+                }
+                if (b != '\\') {
+                    line[write++] = b;
+                    continue;
+                }
+                if (position >= end) throw new IllegalArgumentException("Unterminated string");
+                byte escaped = line[position++];
+                switch (escaped) {
+                    case 'b' -> line[write++] = '\b';
+                    case 'f' -> line[write++] = '\f';
+                    case 'n' -> line[write++] = '\n';
+                    case 'r' -> line[write++] = '\r';
+                    case 't' -> line[write++] = '\t';
+                    case 'u' -> {
+                        int c = hex4();
+                        if (Character.isHighSurrogate((char) c) && position + 6 <= end
+                                && line[position] == '\\' && line[position + 1] == 'u') {
+                            position += 2;
+                            int low = hex4();
+                            c = Character.isLowSurrogate((char) low) ? Character.toCodePoint((char) c, (char) low) : '?';
+                        } else if (Character.isSurrogate((char) c)) {
+                            c = '?';
+                        }
+                        write = encodeUtf8(c, write);
+                    }
+                    default -> line[write++] = escaped;
+                }
+            }
+        }
+
+        private int hex4() {
+            if (position + 4 > end) throw new IllegalArgumentException("Bad \\u escape");
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(line[position++], 16);
+                if (digit < 0) throw new IllegalArgumentException("Bad \\u escape");
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * Writes a code point as UTF-8; it never takes more bytes than the escape it came from
+         */
+        private int encodeUtf8(int c, int write) {
+            if (c < 0x80) {
+                line[write++] = (byte) c;
+            } else if (c < 0x800) {
+                line[write++] = (byte) (0xc0 | c >> 6);
+                line[write++] = (byte) (0x80 | c & 0x3f);
+            } else if (c < 0x10000) {
+                line[write++] = (byte) (0xe0 | c >> 12);
+                line[write++] = (byte) (0x80 | c >> 6 & 0x3f);
+                line[write++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                line[write++] = (byte) (0xf0 | c >> 18);
+                line[write++] = (byte) (0x80 | c >> 12 & 0x3f);
+                line[write++] = (byte) (0x80 | c >> 6 & 0x3f);
+                line[write++] = (byte) (0x80 | c & 0x3f);
+            }
+            return write;
+        }
+
+        private boolean isEmpty(int column) {
+            return starts[column] < 0 || starts[column] == ends[column];
+        }
+
+        private boolean is(int column, String text) {
+            return !isEmpty(column) && equalsAscii(starts[column], ends[column], text, true);
+        }
+
+        private boolean equalsAscii(int from, int to, String text, boolean ignoreCase) {
+            if (to - from != text.length()) return false;
+            for (int i = 0; i < text.length(); i++) {
+                int b = line[from + i];
+                int c = text.charAt(i);
+                if (b != c && !(ignoreCase && (b | 0x20) == (c | 0x20) && (c | 0x20) >= 'a' && (c | 0x20) <= 'z'))
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean isAscii(int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (line[i] < 0) return false;
+            }
+            return true;
+        }
+
+        private String text(int column) {
+            return new String(line, starts[column], ends[column] - starts[column], StandardCharsets.UTF_8);
+        }
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause)
+                throw new SitemapGeneratorException("Problem reading URL list", cause.getCause());
+            throw new SitemapGeneratorException(e.getCause());
+        }
+    }
+
+    /**
+     * The parsed URLs of one chunk, kept in parallel primitive arrays with the locs as bytes in one arena
+     */
+    private static final class Chunk {
+        private static final Granularity[] GRANULARITIES = Granularity.values();
+
+        private byte[] arena = new byte[4096];
+        private int arenaSize = 0;
+        private int[] locEnds = new int[256];
+        private boolean[] ascii = new boolean[256];
+        private long[] lastMods = new long[256];
+        private byte[] granularities = new byte[256];
+        private byte[] changeFreqs = new byte[256];
+        private float[] priorities = new float[256];
+        /**
+         * The URLs that had to be built as objects, by index; null until there is one
+         */
+        private WebSitemapUrl[] urls;
+        private int size = 0;
+        private final List<BadLine> badLines = new ArrayList<>();
+        int lineCount = 0;
+
+        void add(byte[] bytes, int from, int to, boolean isAscii, long lastMod, Granularity granularity,
+                 ChangeFreq changeFreq, float priority) {
+            if (size == locEnds.length) grow();
+            int length = to - from;
+            if (arena.length - arenaSize < length) arena = Arrays.copyOf(arena, Math.max(arenaSize + length, arena.length * 2));
+            System.arraycopy(bytes, from, arena, arenaSize, length);
+            arenaSize += length;
+            locEnds[size] = arenaSize;
+            ascii[size] = isAscii;
+            lastMods[size] = lastMod;
+            granularities[size] = (byte) (granularity == null ? -1 : granularity.ordinal());
+            changeFreqs[size] = (byte) (changeFreq == null ? -1 : changeFreq.ordinal());
+            priorities[size] = priority;
+            size++;
+        }
+
+        void add(WebSitemapUrl url) {
+            if (size == locEnds.length) grow();
+            if (urls == null) urls = new WebSitemapUrl[locEnds.length];
+            urls[size] = url;
+            locEnds[size] = arenaSize;
+            size++;
+        }
+
+        /**
+         * @param number the line number within the chunk, 1-based
+         */
+        void badLine(int number, String text, String reason) {
+            badLines.add(new BadLine(size, number, text, reason));
+        }
+
+        private void grow() {
+            int capacity = locEnds.length * 2;
+            locEnds = Arrays.copyOf(locEnds, capacity);
+            ascii = Arrays.copyOf(ascii, capacity);
+            lastMods = Arrays.copyOf(lastMods, capacity);
+            granularities = Arrays.copyOf(granularities, capacity);
+            changeFreqs = Arrays.copyOf(changeFreqs, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            if (urls != null) urls = Arrays.copyOf(urls, capacity);
+        }
+
+        /**
+         * Adds the URLs to the generator and reports the bad lines, in file order
+         *
+         * @param firstLine the number of lines before this chunk
+         */
+        void addTo(WebSitemapGenerator generator, ErrorSink errorSink, long firstLine) {
+            AsciiChars loc = new AsciiChars();
+            int bad = 0;
+            for (int i = 0; i < size; i++) {
+                for (; bad < badLines.size() && badLines.get(bad).index() == i; bad++) {
+                    report(badLines.get(bad), errorSink, firstLine);
+                }
+                if (urls != null && urls[i] != null) {
+                    generator.addUrl(urls[i]);
+                    continue;
+                }
+                int start = i == 0 ? 0 : locEnds[i - 1];
+                CharSequence text = ascii[i] ? loc.of(arena, start, locEnds[i] - start)
+                        : new String(arena, start, locEnds[i] - start, StandardCharsets.UTF_8);
+                generator.addUrl(text, lastMods[i], granularities[i] < 0 ? null : GRANULARITIES[granularities[i]],
+                        changeFreqs[i] < 0 ? null : CHANGE_FREQS[changeFreqs[i]], priorities[i]);
+            }
+            for (; bad < badLines.size(); bad++) {
+                report(badLines.get(bad), errorSink, firstLine);
+            }
+        }
+
+        private static void report(BadLine line, ErrorSink errorSink, long firstLine) {
+            errorSink.badLine(firstLine + line.number(), line.text(), line.reason());
+        }
+    }
+
+    /**
+     * @param index  the number of URLs of the chunk before the line
+     * @param number the line number within its chunk, 1-based
+     */
+    private record BadLine(int index, int number, String text, String reason) {
+    }
+
+    /**
+     * A reusable view of ASCII bytes as characters, so a loc can be checked and added without a string
+     */
+    private static final class AsciiChars implements CharSequence {
+        private byte[] bytes;
+        private int start;
+        private int length;
+
+        AsciiChars of(byte[] bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Writes to a channel while computing a SHA-256 hash of everything written, and hands the hash on once the
+ * channel is closed
+ */
+class HashingChannel implements GatheringByteChannel {
+    interface Listener {
+        void closed(byte[] hash) throws IOException;
+    }
+
+    private final WritableByteChannel channel;
+    private final Listener listener;
+    private final MessageDigest digest;
+
+    HashingChannel(WritableByteChannel channel, Listener listener) {
+        this.channel = channel;
+        this.listener = listener;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int written = channel.write(src);
+        update(src, position);
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        int[] positions = new int[length];
+        for (int i = 0; i < length; i++) {
+            positions[i] = srcs[offset + i].position();
+        }
+        long written = 0;
+        if (channel instanceof GatheringByteChannel gathering) {
+            written = gathering.write(srcs, offset, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                written += channel.write(srcs[offset + i]);
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            update(srcs[offset + i], positions[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    private void update(ByteBuffer buffer, int from) {
+        if (buffer.position() > from) {
+            digest.update(buffer.duplicate().position(from).limit(buffer.position()));
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        channel.close();
+        listener.closed(digest.digest());
+    }
+}
@@ -0,0 +1,81 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps each sitemap in memory as bytes, in the order the sitemaps were finished
+ */
+public class InMemorySitemapSink implements SitemapSink {
+    private final Map<String, ByteBuffer> sitemaps = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public WritableByteChannel open(String name) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        return new WritableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!open) throw new IOException("Sitemap " + name + " already closed");
+                int length = src.remaining();
+                if (src.hasArray()) {
+                    content.write(src.array(), src.arrayOffset() + src.position(), length);
+                    src.position(src.limit());
+                } else {
+                    byte[] bytes = new byte[length];
+                    src.get(bytes);
+                    content.write(bytes);
+                }
+                return length;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                if (open) {
+                    open = false;
+                    sitemaps.put(name, ByteBuffer.wrap(content.toByteArray()).asReadOnlyBuffer());
+                }
+            }
+        };
+    }
+
+    @Override
+    public void rename(String from, String to) {
+        synchronized (sitemaps) {
+            ByteBuffer content = sitemaps.remove(from);
+            if (content != null) sitemaps.put(to, content);
+        }
+    }
+
+    /**
+     * Retrieves one finished sitemap
+     *
+     * @return a read-only view of its bytes, or null if there is no such sitemap
+     */
+    public ByteBuffer getSitemap(String name) {
+        ByteBuffer content = sitemaps.get(name);
+        return content == null ? null : content.duplicate();
+    }
+
+    /**
+     * Retrieves all finished sitemaps by name
+     */
+    public Map<String, ByteBuffer> getSitemaps() {
+        synchronized (sitemaps) {
+            Map<String, ByteBuffer> copy = new LinkedHashMap<>();
+            sitemaps.forEach((name, content) -> copy.put(name, content.duplicate()));
+            return copy;
+        }
+    }
+}
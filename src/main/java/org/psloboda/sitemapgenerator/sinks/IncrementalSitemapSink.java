@@ -0,0 +1,154 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes sitemaps to files in a directory, but leaves a file alone when its new content is byte-for-byte the
+ * same as what the previous run wrote there, so it keeps its modification time and downstream copies don't
+ * move it again.
+ *
+ * <p>Each sitemap is written to a temporary file while a SHA-256 hash of it is computed. When the channel is
+ * closed, the hash is compared with the one recorded in the manifest file; an identical sitemap's temporary
+ * file is dropped, any other replaces the old file. {@link #commit(List)} then writes the new manifest, which
+ * records each sitemap's hash and the time its content last changed, and deletes sitemaps from the previous
+ * run that weren't written again.</p>
+ */
+public class IncrementalSitemapSink implements SitemapSink {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path dir;
+    private final Path manifest;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    /**
+     * @param dir          the existing directory the sitemaps are written to
+     * @param manifestName the file name of the manifest in that directory, e.g. "sitemap.manifest"
+     */
+    public IncrementalSitemapSink(Path dir, String manifestName) throws IOException {
+        if (dir == null) throw new NullPointerException("dir may not be null");
+        this.dir = dir;
+        this.manifest = dir.resolve(manifestName);
+        this.previous = readManifest(manifest);
+    }
+
+    @Override
+    public GatheringByteChannel open(String name) throws IOException {
+        Path temp = dir.resolve(name + TEMP_SUFFIX);
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        return new HashingChannel(channel, hash -> {
+            Path target = dir.resolve(name);
+            Entry old = previous.get(name);
+            if (old != null && Arrays.equals(old.hash, hash) && Files.exists(target)) {
+                Files.delete(temp);
+                current.put(name, old);
+            } else {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                current.put(name, new Entry(hash, Instant.now(), true));
+            }
+        });
+    }
+
+    /**
+     * Moves a finished sitemap. If the new name already holds the same content from the previous run,
+     * that file is kept and the renamed one is deleted instead.
+     */
+    @Override
+    public void rename(String from, String to) throws IOException {
+        Entry entry = current.remove(from);
+        if (entry == null) throw new NoSuchFileException(dir.resolve(from).toString());
+        Entry old = previous.get(to);
+        if (old != null && Arrays.equals(old.hash, entry.hash) && Files.exists(dir.resolve(to))) {
+            Files.delete(dir.resolve(from));
+            current.put(to, new Entry(old.hash, old.lastModified, false));
+        } else {
+            Files.move(dir.resolve(from), dir.resolve(to), StandardCopyOption.REPLACE_EXISTING);
+            current.put(to, new Entry(entry.hash, Instant.now(), true));
+        }
+    }
+
+    @Override
+    public Path getPath(String name) {
+        return dir.resolve(name);
+    }
+
+    /**
+     * Whether the sitemap's content differs from the previous run's
+     */
+    public boolean isChanged(String name) {
+        Entry entry = current.get(name);
+        return entry == null || entry.changed;
+    }
+
+    /**
+     * When the content of the sitemap last changed, or null if it hasn't been written
+     */
+    public Instant getLastModified(String name) {
+        Entry entry = current.get(name);
+        return entry == null ? null : entry.lastModified;
+    }
+
+    /**
+     * Records the sitemaps of this run in the manifest and deletes the ones from the previous run that are no
+     * longer part of it. Call this once every sitemap has been written.
+     *
+     * @param names the sitemaps of this run, in order
+     * @return the sitemaps whose content changed, in the same order
+     */
+    public List<String> commit(List<String> names) throws IOException {
+        List<String> changed = new ArrayList<>();
+        Path temp = manifest.resolveSibling(manifest.getFileName() + TEMP_SUFFIX);
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (String name : names) {
+                Entry entry = current.get(name);
+                if (entry == null) throw new NoSuchFileException(dir.resolve(name).toString());
+                if (entry.changed) changed.add(name);
+                out.write(name + '\t' + HexFormat.of().formatHex(entry.hash) + '\t' + entry.lastModified + '\n');
+            }
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                Files.deleteIfExists(dir.resolve(name));
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, Entry> readManifest(Path manifest) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!Files.exists(manifest)) return entries;
+        try (BufferedReader in = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 3) throw new IOException("Malformed line in sitemap manifest " + manifest + ": " + line);
+                entries.put(fields[0], new Entry(HexFormat.of().parseHex(fields[1]), Instant.parse(fields[2]), false));
+            }
+        }
+        return entries;
+    }
+
+    private record Entry(byte[] hash, Instant lastModified, boolean changed) {
+    }
+}
@@ -0,0 +1,40 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes each sitemap to a file in a directory, on any {@link java.nio.file.FileSystem}
+ */
+public class PathSitemapSink implements SitemapSink {
+    private final Path dir;
+
+    /**
+     * @param dir the existing directory the sitemaps are written to
+     */
+    public PathSitemapSink(Path dir) {
+        if (dir == null) throw new NullPointerException("dir may not be null");
+        this.dir = dir;
+    }
+
+    @Override
+    public WritableByteChannel open(String name) throws IOException {
+        return FileChannel.open(dir.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void rename(String from, String to) throws IOException {
+        Files.move(dir.resolve(from), dir.resolve(to), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public Path getPath(String name) {
+        return dir.resolve(name);
+    }
+}
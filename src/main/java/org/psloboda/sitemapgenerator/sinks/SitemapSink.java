@@ -0,0 +1,41 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Where a generator writes its sitemaps. By default, sitemaps are written as files to the base directory;
+ * a sink can send them anywhere else, e.g. to another {@link java.nio.file.FileSystem}, a socket or memory.
+ *
+ * <p>A sitemap is opened by name, receives its bytes (already gzipped when gzip is on) through
+ * {@link WritableByteChannel#write(java.nio.ByteBuffer)} and is finished by closing the channel.
+ * Sitemaps may be written from several threads at once.</p>
+ */
+@FunctionalInterface
+public interface SitemapSink {
+
+    /**
+     * Starts a new sitemap
+     *
+     * @param name the file name of the sitemap, e.g. "sitemap1.xml.gz"
+     * @return the channel receiving the sitemap's bytes; closing it finishes the sitemap
+     */
+    WritableByteChannel open(String name) throws IOException;
+
+    /**
+     * Renames a finished sitemap. The generator calls this when "sitemap.xml" turns out not to be the only
+     * sitemap and becomes "sitemap1.xml". Sinks that can't rename, such as streams, ignore it.
+     */
+    default void rename(String from, String to) throws IOException {
+    }
+
+    /**
+     * The file a sitemap was written to, used for validation and to report files written
+     *
+     * @return the path, or null if the sitemap doesn't end up in a file
+     */
+    default Path getPath(String name) {
+        return null;
+    }
+}
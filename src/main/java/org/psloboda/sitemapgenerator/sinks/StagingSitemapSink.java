@@ -0,0 +1,244 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Writes a complete generation of sitemaps, and their index, into a fresh staging directory and then publishes
+ * it in one atomic step, so readers never see half-written sitemaps or an index pointing to sitemaps that
+ * don't exist yet.
+ *
+ * <p>The live directory is a symbolic link to the current generation, which sits next to it. Each sitemap is
+ * streamed to a temporary file in the staging directory while it is hashed. One whose content turns out to be
+ * byte-for-byte the same as the one of the same name in the current generation is dropped and hard linked to the
+ * old file instead, so it keeps its modification time and costs no disk space or sync. The manifest records the
+ * hashes of the sitemaps and of the index written with
+ * {@link org.psloboda.sitemapgenerator.generators.index.SitemapIndexGenerator.Options#publish(StagingSitemapSink)};
+ * it sits next to its generation rather than in it, so it is never served.
+ * {@link #publish()} syncs the new files to disk in batches, points the link at the new generation with an
+ * atomic rename and deletes the old generation.</p>
+ *
+ * <pre>
+ * StagingSitemapSink staging = new StagingSitemapSink(Path.of("/var/www/sitemaps"));
+ * WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+ *         .publish(staging)
+ *         .build();
+ * // add URLs, write() and writeSitemapsWithIndex()
+ * staging.publish();
+ * </pre>
+ */
+public class StagingSitemapSink implements SitemapSink {
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int SYNC_BATCH_SIZE = 64;
+
+    private final Path live;
+    private final Path previous;
+    private final Path staging;
+    private final Map<String, byte[]> previousHashes;
+    private final Map<String, byte[]> hashes = new ConcurrentHashMap<>();
+    private final Set<String> linked = ConcurrentHashMap.newKeySet();
+    private boolean published = false;
+
+    /**
+     * Creates the staging directory next to the live directory
+     *
+     * @param live the path the sitemaps are served from; it must not exist yet or be a symbolic link
+     */
+    public StagingSitemapSink(Path live) throws IOException {
+        if (live == null) throw new NullPointerException("live may not be null");
+        Path absolute = live.toAbsolutePath();
+        if (Files.isSymbolicLink(absolute)) {
+            previous = absolute.resolveSibling(Files.readSymbolicLink(absolute));
+        } else if (Files.exists(absolute, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(live + " must be a symbolic link to the published sitemaps; move the directory out of the way first");
+        } else {
+            previous = null;
+        }
+        this.live = absolute;
+        this.previousHashes = readManifest(previous);
+        this.staging = Files.createTempDirectory(absolute.getParent(), absolute.getFileName() + ".");
+        try {
+            Files.setPosixFilePermissions(staging, PosixFilePermissions.fromString("rwxr-xr-x"));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system; keep the default permissions
+        }
+    }
+
+    /**
+     * The directory the new generation is written to
+     */
+    public Path getStagingDir() {
+        return staging;
+    }
+
+    @Override
+    public GatheringByteChannel open(String name) throws IOException {
+        checkNotPublished();
+        Path temp = staging.resolve(name + TEMP_SUFFIX);
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        return new HashingChannel(channel, hash -> {
+            hashes.put(name, hash);
+            if (linkIfUnchanged(name, hash)) {
+                Files.delete(temp);
+            } else {
+                Files.move(temp, staging.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            }
+        });
+    }
+
+    @Override
+    public void rename(String from, String to) throws IOException {
+        byte[] hash = hashes.remove(from);
+        if (hash == null) throw new NoSuchFileException(staging.resolve(from).toString());
+        linked.remove(from);
+        Files.move(staging.resolve(from), staging.resolve(to), StandardCopyOption.REPLACE_EXISTING);
+        hashes.put(to, hash);
+        linkIfUnchanged(to, hash);
+    }
+
+    @Override
+    public Path getPath(String name) {
+        return staging.resolve(name);
+    }
+
+    /**
+     * Stages a hard link to the current generation's sitemap of the same name, if it has the same content,
+     * replacing any staged copy
+     *
+     * @return whether the sitemap was linked; if not, it has to be written
+     */
+    private boolean linkIfUnchanged(String name, byte[] hash) throws IOException {
+        if (!Arrays.equals(hash, previousHashes.get(name))) return false;
+        Path target = staging.resolve(name);
+        Path temp = staging.resolve(name + ".link");
+        try {
+            Files.createLink(temp, previous.resolve(name));
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            return false; // no hard links here, or the old file is gone
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        linked.add(name);
+        return true;
+    }
+
+    /**
+     * Syncs the new generation to disk, makes it the live one and deletes the previous generation.
+     * Call this once every sitemap and the index have been written; the sink can't be used afterwards.
+     */
+    public void publish() throws IOException {
+        checkNotPublished();
+        published = true;
+        writeManifest();
+
+        List<Path> unsynced = new ArrayList<>(List.of(manifest(staging)));
+        try (Stream<Path> files = Files.list(staging)) {
+            files.filter(file -> !linked.contains(file.getFileName().toString())).forEach(unsynced::add);
+        }
+        for (int start = 0; start < unsynced.size(); start += SYNC_BATCH_SIZE) {
+            try {
+                unsynced.subList(start, Math.min(start + SYNC_BATCH_SIZE, unsynced.size()))
+                        .parallelStream()
+                        .forEach(StagingSitemapSink::sync);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        syncDirectory(staging);
+
+        Path link = live.resolveSibling(live.getFileName() + ".link");
+        Files.deleteIfExists(link);
+        Files.createSymbolicLink(link, staging.getFileName());
+        Files.move(link, live, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(live.getParent());
+
+        if (previous != null) {
+            delete(previous);
+            Files.deleteIfExists(manifest(previous));
+        }
+    }
+
+    private void checkNotPublished() {
+        if (published) throw new IllegalStateException("This generation has already been published");
+    }
+
+    private void writeManifest() throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(manifest(staging), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, byte[]> entry : hashes.entrySet()) {
+                out.write(entry.getKey() + '\t' + HexFormat.of().formatHex(entry.getValue()) + '\n');
+            }
+        }
+    }
+
+    private static Map<String, byte[]> readManifest(Path generation) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        if (generation == null || !Files.exists(manifest(generation))) return entries;
+        try (BufferedReader in = Files.newBufferedReader(manifest(generation), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 2) throw new IOException("Malformed line in sitemap manifest " + generation + ": " + line);
+                entries.put(fields[0], HexFormat.of().parseHex(fields[1]));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * The manifest of a generation, next to its directory
+     */
+    private static Path manifest(Path generation) {
+        return generation.resolveSibling(generation.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    private static void sync(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes new directory entries durable; not every platform can open a directory, so failures are ignored
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.psloboda.sitemapgenerator.sinks;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes every sitemap to one stream or channel, e.g. a socket or a pipe, one sitemap after another.
+ * Usually used for a single sitemap; when sitemaps are written from several threads, each one waits until
+ * the sitemap before it is finished. A sitemap may be closed on another thread than the one that opened it.
+ * The stream is not closed.
+ */
+public class StreamSitemapSink implements SitemapSink {
+    private final WritableByteChannel channel;
+    /**
+     * Taken while a sitemap is open; not a lock, which only the opening thread could release
+     */
+    private final Semaphore turn = new Semaphore(1);
+
+    public StreamSitemapSink(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    public StreamSitemapSink(WritableByteChannel channel) {
+        if (channel == null) throw new NullPointerException("channel may not be null");
+        this.channel = channel;
+    }
+
+    @Override
+    public WritableByteChannel open(String name) throws IOException {
+        try {
+            turn.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to write sitemap " + name);
+        }
+        return new WritableByteChannel() {
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int written = 0;
+                while (src.hasRemaining()) {
+                    written += channel.write(src);
+                }
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() {
+                if (open) {
+                    open = false;
+                    turn.release();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package org.psloboda.sitemapgenerator.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a single gzip member, like {@link java.util.zip.GZIPOutputStream}, but deflates fixed-size blocks
+ * on several threads at once, the way pigz does.
+ *
+ * <p>Each block is primed with the last 32KB of the block before it and ends on a sync flush, so the
+ * compressed blocks simply concatenate into one valid deflate stream and the ratio stays close to a
+ * single-threaded run. The CRC is computed on the writing thread as data comes in.</p>
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+    /**
+     * 128KB of uncompressed data per block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final Executor executor;
+    private final int level;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final CRC32 crc = new CRC32();
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength = 0;
+    private byte[] dictionary;
+    private long totalIn = 0;
+    private boolean closed = false;
+
+    /**
+     * Compresses on the common fork/join pool
+     */
+    public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+        this(out, ForkJoinPool.commonPool());
+    }
+
+    public ParallelGZIPOutputStream(OutputStream out, Executor executor) throws IOException {
+        this(out, executor, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out       the destination of the gzip stream
+     * @param executor  runs the block compression
+     * @param level     the deflate compression level
+     * @param blockSize the amount of uncompressed data deflated as one unit of work
+     */
+    public ParallelGZIPOutputStream(OutputStream out, Executor executor, int level, int blockSize) throws IOException {
+        super(out);
+        if (blockSize < DICTIONARY_SIZE) throw new IllegalArgumentException("blockSize may not be less than 32KB: " + blockSize);
+        this.executor = executor;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = 2 * (executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors());
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        crc.update(b, off, len);
+        totalIn += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Writes out all blocks that are done; data still being collected into a block is not flushed,
+     * since that would cut the block short.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeCompleted(false);
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data, writes the gzip trailer and closes the underlying stream
+     */
+    public void finish() throws IOException {
+        if (closed) return;
+        submit(true);
+        writeCompleted(true);
+        writeInt((int) crc.getValue());
+        writeInt((int) totalIn);
+        closed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] input = block;
+        int length = blockLength;
+        byte[] preset = dictionary;
+        if (!last) {
+            dictionary = Arrays.copyOfRange(input, length - DICTIONARY_SIZE, length);
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+        pending.add(CompletableFuture.supplyAsync(() -> deflate(input, length, preset, last), executor));
+        writeCompleted(false);
+    }
+
+    private byte[] deflate(byte[] input, int length, byte[] preset, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (preset != null) {
+                deflater.setDictionary(preset);
+            }
+            deflater.setInput(input, 0, length);
+            ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(length / 4, 4096)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    result.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    result.write(buffer, 0, n);
+                } while (n == buffer.length || !deflater.needsInput());
+            }
+            return result.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes compressed blocks in order
+     *
+     * @param all wait for every pending block; otherwise only take the ones that are done, or are holding up the writer
+     */
+    private void writeCompleted(boolean all) throws IOException {
+        while (!pending.isEmpty() && (all || pending.peek().isDone() || pending.size() > maxPendingBlocks)) {
+            try {
+                out.write(pending.poll().join());
+            } catch (CompletionException e) {
+                throw new IOException("Compressing block failed", e.getCause());
+            }
+        }
+    }
+
+    private void writeInt(int i) throws IOException {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+}
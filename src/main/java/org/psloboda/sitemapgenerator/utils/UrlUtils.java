@@ -2,40 +2,122 @@ package org.psloboda.sitemapgenerator.utils;
 
 import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class UrlUtils {
-    private static final Map<String, String> ENTITIES = new HashMap<>();
-    private static final Pattern PATTERN = Pattern.compile("([&'\"><])");
-
+    /**
+     * What to write instead of each character below '@': an entity, "" to drop a character that XML 1.0 doesn't
+     * allow, or null to keep it
+     */
+    private static final String[] REPLACEMENTS = new String[64];
 
     static {
-        ENTITIES.put("&", "&amp;");
-        ENTITIES.put("'", "&apos;");
-        ENTITIES.put("\"", "&quot;");
-        ENTITIES.put(">", "&gt;");
-        ENTITIES.put("<", "&lt;");
+        for (char c = 0; c < 0x20; c++) {
+            if (c != '\t' && c != '\n' && c != '\r') REPLACEMENTS[c] = "";
+        }
+        REPLACEMENTS['&'] = "&amp;";
+        REPLACEMENTS['\''] = "&apos;";
+        REPLACEMENTS['"'] = "&quot;";
+        REPLACEMENTS['>'] = "&gt;";
+        REPLACEMENTS['<'] = "&lt;";
     }
 
     private UrlUtils() {
     }
 
+    /**
+     * Escapes the XML special characters and drops the characters XML 1.0 doesn't allow
+     *
+     * @return the string itself when there is nothing to escape
+     */
     public static String escapeXml(String string) {
-        Matcher matcher = PATTERN.matcher(string);
-        StringBuilder sb = new StringBuilder();
-        while (matcher.find()) {
-            matcher.appendReplacement(sb, ENTITIES.get(matcher.group(1)));
+        int i = firstToEscape(string, 0);
+        if (i == string.length()) return string;
+        StringBuilder sb = new StringBuilder(string.length() + 16);
+        escapeXml(string, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the text to the builder, escaping the XML special characters and dropping the characters XML 1.0
+     * doesn't allow: control characters other than tab, newline and carriage return, unpaired surrogates,
+     * U+FFFE and U+FFFF. Runs of characters that need neither are copied in one go.
+     */
+    public static void escapeXml(CharSequence text, StringBuilder sb) {
+        try {
+            escapeXml(text, (Appendable) sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder doesn't throw
         }
-        matcher.appendTail(sb);
+    }
 
-        return sb.toString();
+    /**
+     * Appends the URL to the builder, escaped as {@link #escapeXml(CharSequence, StringBuilder)} does. Gives the same
+     * text as {@link URL#toString()}, but escapes http and https URLs part by part without building that string.
+     */
+    public static void escapeXml(URL url, StringBuilder sb) {
+        String protocol = url.getProtocol();
+        if (!protocol.equals("http") && !protocol.equals("https")) {
+            escapeXml(url.toString(), sb);
+            return;
+        }
+        sb.append(protocol).append(':');
+        String authority = url.getAuthority();
+        if (authority != null && !authority.isEmpty()) {
+            sb.append("//");
+            escapeXml(authority, sb);
+        }
+        escapeXml(url.getPath(), sb);
+        if (url.getQuery() != null) {
+            sb.append('?');
+            escapeXml(url.getQuery(), sb);
+        }
+        if (url.getRef() != null) {
+            sb.append('#');
+            escapeXml(url.getRef(), sb);
+        }
+    }
+
+    /**
+     * Appends the text to the destination, escaped as {@link #escapeXml(CharSequence, StringBuilder)} does
+     */
+    public static void escapeXml(CharSequence text, Appendable out) throws IOException {
+        int length = text.length();
+        int start = 0;
+        int i = firstToEscape(text, 0);
+        while (i < length) {
+            char c = text.charAt(i);
+            String replacement = c < REPLACEMENTS.length ? REPLACEMENTS[c] : "";
+            out.append(text, start, i).append(replacement);
+            start = i + 1;
+            i = firstToEscape(text, start);
+        }
+        out.append(text, start, length);
+    }
+
+    /**
+     * The index of the first character from {@code from} on that has to be escaped or dropped, or the length
+     */
+    private static int firstToEscape(CharSequence text, int from) {
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < REPLACEMENTS.length) {
+                if (REPLACEMENTS[c] != null) return i;
+            } else if (c >= Character.MIN_SURROGATE) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                } else if (c <= Character.MAX_SURROGATE || c >= '\uFFFE') {
+                    return i;
+                }
+            }
+        }
+        return length;
     }
 
     public static void checkUrl(URL url, URL baseUrl) {
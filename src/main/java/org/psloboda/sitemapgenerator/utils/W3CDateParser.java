@@ -0,0 +1,262 @@
+package org.psloboda.sitemapgenerator.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+
+/**
+ * Parses W3C datetimes, the ISO 8601 profile sitemaps use, by hand: one pass over the characters, no
+ * {@link java.time.format.DateTimeFormatter} and no intermediate objects. Accepts every granularity of
+ * {@link W3CDateTimeFormatter.Pattern}:
+ *
+ * <pre>
+ * YYYY
+ * YYYY-MM
+ * YYYY-MM-DD
+ * YYYY-MM-DDThh:mmTZD
+ * YYYY-MM-DDThh:mm:ssTZD
+ * YYYY-MM-DDThh:mm:ss.sTZD
+ * </pre>
+ *
+ * where the fraction has one or more digits and the time zone designator TZD is "Z", "+hh:mm" or "-hh:mm".
+ * A time without a TZD, as {@link W3CDateTimeFormatter} writes {@link LocalDateTime}s, is taken to be UTC.
+ * Dates are taken to start at midnight UTC.
+ */
+public final class W3CDateParser {
+
+    private W3CDateParser() {
+    }
+
+    /**
+     * @return the instant the datetime stands for, in milliseconds since the epoch; extra fraction digits are truncated
+     * @throws DateTimeParseException if the text isn't a W3C datetime
+     */
+    public static long parseEpochMillis(CharSequence text) {
+        return parseEpochMillis(text, 0, text.length());
+    }
+
+    /**
+     * Parses the characters from {@code start} up to {@code end}
+     *
+     * @see #parseEpochMillis(CharSequence)
+     */
+    public static long parseEpochMillis(CharSequence text, int start, int end) {
+        return parse(text, null, start, end, null);
+    }
+
+    /**
+     * Parses ASCII bytes from {@code start} up to {@code end}, e.g. straight out of a line of an import file
+     *
+     * @see #parseEpochMillis(CharSequence)
+     */
+    public static long parseEpochMillis(byte[] bytes, int start, int end) {
+        return parse(null, bytes, start, end, null);
+    }
+
+    /**
+     * The granularity of a datetime that {@link #parseEpochMillis(byte[], int, int)} accepted, told from its length
+     * and time zone designator alone, so a caller can render it as {@link #parse(CharSequence)} would without
+     * building the {@link Temporal}
+     */
+    public static Granularity granularity(byte[] bytes, int start, int end) {
+        if (end - start <= 10) return Granularity.DATE;
+        byte last = bytes[end - 1];
+        byte sign = bytes[end - 6];
+        return last == 'Z' || sign == '+' || sign == '-' ? Granularity.INSTANT : Granularity.LOCAL_DATE_TIME;
+    }
+
+    /**
+     * Parses a datetime into the type that the generators render at the same granularity: a {@link LocalDate} for
+     * a year, month or day (the first day of a year or month), a {@link LocalDateTime} for a time without a TZD,
+     * an {@link Instant} for a time in UTC ("Z") and a {@link ZonedDateTime} for a time with an offset
+     *
+     * @throws DateTimeParseException if the text isn't a W3C datetime
+     */
+    public static Temporal parse(CharSequence text) {
+        Fields fields = new Fields();
+        long epochMillis = parse(text, null, 0, text.length(), fields);
+        if (!fields.hasTime) return LocalDate.ofEpochDay(fields.epochDay);
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        if (!fields.hasOffset) return LocalDateTime.ofEpochSecond(epochSecond, fields.nano, ZoneOffset.UTC);
+        Instant instant = Instant.ofEpochSecond(epochSecond, fields.nano);
+        if (fields.utc) return instant;
+        return ZonedDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(fields.offsetSeconds));
+    }
+
+    /**
+     * How much of a datetime was given, which decides the type {@link #parse(CharSequence)} returns for it
+     */
+    public enum Granularity {
+        /**
+         * A year, month or day, parsed into a {@link LocalDate}
+         */
+        DATE,
+        /**
+         * A time without a TZD, parsed into a {@link LocalDateTime}
+         */
+        LOCAL_DATE_TIME,
+        /**
+         * A time in UTC or with an offset, parsed into an {@link Instant} or {@link ZonedDateTime}; the formatter
+         * renders both by their instant
+         */
+        INSTANT
+    }
+
+    /**
+     * What {@link #parse(CharSequence)} needs beyond the epoch milliseconds
+     */
+    private static final class Fields {
+        long epochDay;
+        boolean hasTime;
+        boolean hasOffset;
+        boolean utc;
+        int offsetSeconds;
+        int nano;
+    }
+
+    /**
+     * Parses either characters or bytes, whichever isn't null
+     *
+     * @param fields receives the details of the value; may be null
+     */
+    private static long parse(CharSequence chars, byte[] bytes, int start, int end, Fields fields) {
+        int length = end - start;
+        if (length != 4 && length != 7 && length < 10)
+            throw error("Unexpected length", chars, bytes, start, end, start);
+
+        int year = digits(chars, bytes, start, 4, start, end);
+        int month = 1;
+        int day = 1;
+        if (length > 4) {
+            expect(chars, bytes, start + 4, '-', start, end);
+            month = digits(chars, bytes, start + 5, 2, start, end);
+            if (month < 1 || month > 12) throw error("Invalid month", chars, bytes, start, end, start + 5);
+        }
+        if (length > 7) {
+            expect(chars, bytes, start + 7, '-', start, end);
+            day = digits(chars, bytes, start + 8, 2, start, end);
+            if (day < 1 || day > lengthOfMonth(year, month)) throw error("Invalid day", chars, bytes, start, end, start + 8);
+        }
+        long epochDay = epochDay(year, month, day);
+        if (fields != null) fields.epochDay = epochDay;
+        if (length <= 10) return epochDay * 86_400_000L;
+
+        int i = start + 10;
+        expect(chars, bytes, i, 'T', start, end);
+        if (end - i < 6) throw error("Incomplete time", chars, bytes, start, end, i);
+        int hour = digits(chars, bytes, i + 1, 2, start, end);
+        expect(chars, bytes, i + 3, ':', start, end);
+        int minute = digits(chars, bytes, i + 4, 2, start, end);
+        if (hour > 23 || minute > 59) throw error("Invalid time", chars, bytes, start, end, i + 1);
+        i += 6;
+
+        int second = 0;
+        int nano = 0;
+        if (i < end && at(chars, bytes, i) == ':') {
+            if (end - i < 3) throw error("Incomplete seconds", chars, bytes, start, end, i);
+            second = digits(chars, bytes, i + 1, 2, start, end);
+            if (second > 59) throw error("Invalid seconds", chars, bytes, start, end, i + 1);
+            i += 3;
+            if (i < end && at(chars, bytes, i) == '.') {
+                int fractionStart = ++i;
+                int scale = 100_000_000;
+                while (i < end && isDigit(at(chars, bytes, i))) {
+                    nano += (at(chars, bytes, i) - '0') * scale;
+                    scale /= 10;
+                    i++;
+                }
+                if (i == fractionStart) throw error("Missing fraction digits", chars, bytes, start, end, i);
+            }
+        }
+
+        int offsetSeconds = 0;
+        boolean hasOffset = i < end;
+        boolean utc = false;
+        if (hasOffset) {
+            char sign = at(chars, bytes, i);
+            if (sign == 'Z' && i + 1 == end) {
+                utc = true;
+            } else if ((sign == '+' || sign == '-') && end - i == 6) {
+                int offsetHours = digits(chars, bytes, i + 1, 2, start, end);
+                expect(chars, bytes, i + 3, ':', start, end);
+                int offsetMinutes = digits(chars, bytes, i + 4, 2, start, end);
+                if (offsetMinutes > 59 || offsetHours * 60 + offsetMinutes > 18 * 60)
+                    throw error("Invalid offset", chars, bytes, start, end, i);
+                offsetSeconds = (offsetHours * 60 + offsetMinutes) * 60;
+                if (sign == '-') offsetSeconds = -offsetSeconds;
+            } else {
+                throw error("Invalid time zone designator", chars, bytes, start, end, i);
+            }
+        }
+
+        if (fields != null) {
+            fields.hasTime = true;
+            fields.hasOffset = hasOffset;
+            fields.utc = utc;
+            fields.offsetSeconds = offsetSeconds;
+            fields.nano = nano;
+        }
+        long epochSecond = epochDay * 86_400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return epochSecond * 1000 + nano / 1_000_000;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, after Howard Hinnant's algorithm
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static char at(CharSequence chars, byte[] bytes, int i) {
+        return chars != null ? chars.charAt(i) : (char) (bytes[i] & 0xff);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int digits(CharSequence chars, byte[] bytes, int from, int count, int start, int end) {
+        if (from + count > end) throw error("Unexpected end", chars, bytes, start, end, from);
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = at(chars, bytes, i);
+            if (!isDigit(c)) throw error("Expected a digit", chars, bytes, start, end, i);
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void expect(CharSequence chars, byte[] bytes, int i, char expected, int start, int end) {
+        if (i >= end || at(chars, bytes, i) != expected)
+            throw error("Expected '" + expected + "'", chars, bytes, start, end, i);
+    }
+
+    private static DateTimeParseException error(String message, CharSequence chars, byte[] bytes, int start, int end, int index) {
+        String text = chars != null ? chars.subSequence(start, end).toString() : new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        return new DateTimeParseException(message + " at index " + (index - start) + " of W3C datetime '" + text + "'", text, index - start);
+    }
+}
@@ -1,12 +1,17 @@
 package org.psloboda.sitemapgenerator.utils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serial;
 import java.io.Serializable;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
+import java.time.zone.ZoneRules;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter.Pattern.DAY;
 import static org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter.Pattern.MILLISECOND;
@@ -17,8 +22,28 @@ public class W3CDateTimeFormatter implements Serializable {
      */
     public static final ZoneId ZULU = ZoneId.of("GMT");
 
-    private final transient DateTimeFormatter defaultFormatter;
+    /**
+     * The value computed for the class before {@link #pattern} was serialized, so formatters serialized back
+     * then can still be read; they come back without a pattern
+     */
+    @Serial
+    private static final long serialVersionUID = -7394843192733582432L;
+
+    private transient DateTimeFormatter defaultFormatter;
+    /**
+     * The pattern, or null to format each temporal type its own way
+     */
+    private final Pattern pattern;
     private final ZoneId zoneId;
+    /**
+     * The formatters {@link #format(Temporal)} falls back to, by temporal type, already set to {@link #zoneId}
+     */
+    private transient volatile Map<Class<?>, DateTimeFormatter> zonedFormatters;
+    private transient volatile ZoneRules zoneRules;
+    /**
+     * The last value formatted; sitemaps often hold runs of URLs with the same lastmod
+     */
+    private transient volatile Formatted last;
     private static final Map<Class<? extends Temporal>, DateTimeFormatter> FORMATTERS = new HashMap<>();
 
     static {
@@ -35,11 +60,13 @@ public class W3CDateTimeFormatter implements Serializable {
     public W3CDateTimeFormatter(ZoneId zoneId) {
         this.zoneId = zoneId;
         this.defaultFormatter = null;
+        this.pattern = null;
     }
 
     public W3CDateTimeFormatter(Pattern pattern, ZoneId zoneId) {
         this.zoneId = zoneId;
         defaultFormatter = pattern.getFormatter();
+        this.pattern = pattern;
     }
 
     public W3CDateTimeFormatter(Pattern pattern) {
@@ -72,10 +99,205 @@ public class W3CDateTimeFormatter implements Serializable {
     }
 
     public String format(Temporal temporal) {
-        return Optional.ofNullable(defaultFormatter)
-                .orElseGet(() -> FORMATTERS.get(temporal.getClass()))
-                .withZone(zoneId)
-                .format(temporal);
+        Formatted cached = last;
+        if (cached != null && cached.temporal.equals(temporal)) return cached.text;
+        StringBuilder sb = new StringBuilder(29);
+        render(temporal, sb);
+        String text = sb.toString();
+        last = new Formatted(temporal, text);
+        return text;
+    }
+
+    /**
+     * Appends the formatted value to the builder, the same text as {@link #format(Temporal)} returns.
+     * {@link LocalDate}, {@link LocalDateTime}, {@link Instant}, {@link ZonedDateTime} and {@link OffsetDateTime}
+     * values of years 1 to 9999 are written digit by digit, without going through {@link DateTimeFormatter}.
+     */
+    public void format(Temporal temporal, StringBuilder sb) {
+        Formatted cached = last;
+        if (cached != null && cached.temporal.equals(temporal)) {
+            sb.append(cached.text);
+            return;
+        }
+        int start = sb.length();
+        render(temporal, sb);
+        last = new Formatted(temporal, sb.substring(start));
+    }
+
+    /**
+     * Appends an instant given in milliseconds since the epoch, the same text as formatting
+     * {@link Instant#ofEpochMilli(long)} gives, without creating the {@link Instant} for years 1 to 9999
+     */
+    public void formatEpochMillis(long epochMillis, StringBuilder sb) {
+        Pattern pattern = this.pattern != null ? this.pattern : MILLISECOND;
+        int nano = (int) Math.floorMod(epochMillis, 1000L) * 1_000_000;
+        if (!renderInstant(Math.floorDiv(epochMillis, 1000L), nano, pattern, sb)) {
+            sb.append(zonedFormatter(Instant.class).format(Instant.ofEpochMilli(epochMillis)));
+        }
+    }
+
+    private void render(Temporal temporal, StringBuilder sb) {
+        Pattern pattern = this.pattern != null ? this.pattern : temporal instanceof LocalDate ? DAY : MILLISECOND;
+        if (!renderDigits(temporal, pattern, sb)) {
+            sb.append(zonedFormatter(temporal.getClass()).format(temporal));
+        }
+    }
+
+    /**
+     * Writes the fields the pattern asks for, converting values that carry an instant to {@link #zoneId}
+     *
+     * @return false, having written nothing, for values the formatter has to handle
+     */
+    private boolean renderDigits(Temporal temporal, Pattern pattern, StringBuilder sb) {
+        if (temporal instanceof LocalDate date) {
+            if (pattern.ordinal() < DAY.ordinal()) return false;
+            return renderDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), pattern, sb);
+        }
+        if (temporal instanceof LocalDateTime dateTime) {
+            if (!renderDate(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(), pattern, sb)) return false;
+            if (pattern.ordinal() < DAY.ordinal()) {
+                renderTime(dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), dateTime.getNano(), pattern, sb);
+            }
+            return true;
+        }
+
+        long epochSecond;
+        int nano;
+        if (temporal instanceof Instant instant) {
+            epochSecond = instant.getEpochSecond();
+            nano = instant.getNano();
+        } else if (temporal instanceof ZonedDateTime dateTime) {
+            epochSecond = dateTime.toEpochSecond();
+            nano = dateTime.getNano();
+        } else if (temporal instanceof OffsetDateTime dateTime && this.pattern != null) {
+            epochSecond = dateTime.toEpochSecond();
+            nano = dateTime.getNano();
+        } else {
+            return false;
+        }
+        return renderInstant(epochSecond, nano, pattern, sb);
+    }
+
+    /**
+     * Writes the fields the pattern asks for of an instant, converted to {@link #zoneId}
+     *
+     * @return false, having written nothing, if the year or the offset can't be written digit by digit
+     */
+    private boolean renderInstant(long epochSecond, int nano, Pattern pattern, StringBuilder sb) {
+        ZoneRules rules = zoneRules();
+        int offset = (rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : rules.getOffset(Instant.ofEpochSecond(epochSecond)))
+                .getTotalSeconds();
+        if (offset % 60 != 0) return false;
+
+        long local = epochSecond + offset;
+        long epochDay = Math.floorDiv(local, 86400);
+        int secondOfDay = Math.floorMod(local, 86400);
+        // days to civil date, after Howard Hinnant's algorithm
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 1 || year > 9999) return false;
+
+        renderDate((int) year, month, day, pattern, sb);
+        if (pattern.ordinal() < DAY.ordinal()) {
+            renderTime(secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, nano, pattern, sb);
+            renderOffset(offset, sb);
+        }
+        return true;
+    }
+
+    /**
+     * @return false, having written nothing, for years the four-digit form can't hold
+     */
+    private static boolean renderDate(int year, int month, int day, Pattern pattern, StringBuilder sb) {
+        if (year < 1 || year > 9999) return false;
+        sb.append((char) ('0' + year / 1000))
+                .append((char) ('0' + year / 100 % 10))
+                .append((char) ('0' + year / 10 % 10))
+                .append((char) ('0' + year % 10));
+        if (pattern == Pattern.YEAR) return true;
+        sb.append('-');
+        appendTwoDigits(month, sb);
+        if (pattern == Pattern.MONTH) return true;
+        sb.append('-');
+        appendTwoDigits(day, sb);
+        return true;
+    }
+
+    private static void renderTime(int hour, int minute, int second, int nano, Pattern pattern, StringBuilder sb) {
+        sb.append('T');
+        appendTwoDigits(hour, sb);
+        sb.append(':');
+        appendTwoDigits(minute, sb);
+        if (pattern == Pattern.MINUTE) return;
+        sb.append(':');
+        appendTwoDigits(second, sb);
+        if (pattern == Pattern.SECOND) return;
+        int millis = nano / 1_000_000;
+        sb.append('.')
+                .append((char) ('0' + millis / 100))
+                .append((char) ('0' + millis / 10 % 10))
+                .append((char) ('0' + millis % 10));
+    }
+
+    /**
+     * Writes the offset as "Z" or "+HH:MM", like the patterns' "XXX"
+     */
+    private static void renderOffset(int offsetSeconds, StringBuilder sb) {
+        if (offsetSeconds == 0) {
+            sb.append('Z');
+            return;
+        }
+        int minutes = Math.abs(offsetSeconds) / 60;
+        sb.append(offsetSeconds < 0 ? '-' : '+');
+        appendTwoDigits(minutes / 60, sb);
+        sb.append(':');
+        appendTwoDigits(minutes % 60, sb);
+    }
+
+    private static void appendTwoDigits(int value, StringBuilder sb) {
+        sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private DateTimeFormatter zonedFormatter(Class<?> type) {
+        Map<Class<?>, DateTimeFormatter> formatters = zonedFormatters;
+        if (formatters == null) {
+            formatters = new ConcurrentHashMap<>();
+            zonedFormatters = formatters;
+        }
+        DateTimeFormatter formatter = formatters.get(type);
+        if (formatter == null) {
+            formatter = Optional.ofNullable(pattern)
+                    .map(Pattern::getFormatter)
+                    .orElseGet(() -> FORMATTERS.get(type))
+                    .withZone(zoneId);
+            formatters.put(type, formatter);
+        }
+        return formatter;
+    }
+
+    private ZoneRules zoneRules() {
+        ZoneRules rules = zoneRules;
+        if (rules == null) {
+            rules = zoneId.getRules();
+            zoneRules = rules;
+        }
+        return rules;
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        defaultFormatter = pattern != null ? pattern.getFormatter() : null;
+    }
+
+    private record Formatted(Temporal temporal, String text) {
     }
 
     public enum Pattern {
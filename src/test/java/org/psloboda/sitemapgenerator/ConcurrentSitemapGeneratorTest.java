@@ -0,0 +1,212 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.ConcurrentSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentSitemapGeneratorTest {
+    private static final Pattern LOC = Pattern.compile("<loc>(.*?)</loc>");
+
+    File dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = File.createTempFile(this.getClass().getSimpleName(), "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        dir.deleteOnExit();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Optional.ofNullable(dir).map(File::listFiles)
+                .stream()
+                .flatMap(Arrays::stream)
+                .forEach(file -> {
+                    file.deleteOnExit();
+                    assertTrue(file.delete());
+                });
+
+        assertTrue(dir.delete());
+        dir = null;
+    }
+
+    @Test
+    void testManyThreads() throws Exception {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).autoValidate(true).maxUrls(100).build());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int partition = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    csg.addUrl("https://www.example.com/" + partition + "/" + i);
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        List<File> files = csg.write();
+
+        assertEquals(10, files.size());
+        Set<String> locs = new HashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals("sitemap" + (i + 1) + ".xml", files.get(i).getName(), "Sitemap misnamed");
+            Matcher matcher = LOC.matcher(TestUtil.slurpFileAndDelete(files.get(i)));
+            while (matcher.find()) {
+                assertTrue(locs.add(matcher.group(1)), "Duplicate URL " + matcher.group(1));
+            }
+        }
+        assertEquals(1000, locs.size());
+
+        String index = TestUtil.slurpFileAndDelete(csg.writeSitemapsWithIndex());
+        assertTrue(index.contains("https://www.example.com/sitemap10.xml"), "Index is missing the last sitemap");
+        assertFalse(index.contains("https://www.example.com/sitemap11.xml"), "Index has too many sitemaps");
+    }
+
+    @Test
+    void testWriteWhileAdding() throws Exception {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(100).build());
+
+        AtomicInteger added = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int partition = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 1_000_000; i++) {
+                        csg.addUrl("https://www.example.com/" + partition + "/" + i);
+                        added.incrementAndGet();
+                        if (i == 500) started.countDown();
+                    }
+                } catch (SitemapGeneratorException e) {
+                    // write() has begun
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        started.await();
+        List<File> files = csg.write();
+        for (Thread thread : threads) thread.join();
+
+        int locs = 0;
+        for (File file : files) {
+            Matcher matcher = LOC.matcher(TestUtil.slurpFileAndDelete(file));
+            while (matcher.find()) locs++;
+        }
+        assertEquals(added.get(), locs, "URLs added during write() were lost");
+    }
+
+    @Test
+    void testDeduplicateAcrossThreads() throws Exception {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).deduplicate(true).maxUrls(100).build());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    csg.addUrl("https://www.example.com/" + i);
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        List<File> files = csg.write();
+
+        Set<String> locs = new HashSet<>();
+        for (File file : files) {
+            Matcher matcher = LOC.matcher(TestUtil.slurpFileAndDelete(file));
+            while (matcher.find()) {
+                assertTrue(locs.add(matcher.group(1)), "Duplicate URL " + matcher.group(1));
+            }
+        }
+        assertEquals(250, locs.size());
+    }
+
+    @Test
+    void testSingleSitemap() {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                new WebSitemapGenerator("https://www.example.com", dir));
+        csg.addUrl("https://www.example.com/index.html");
+
+        List<File> files = csg.write();
+
+        assertEquals(1, files.size());
+        assertEquals("sitemap.xml", files.get(0).getName(), "Sitemap misnamed");
+        assertTrue(TestUtil.slurpFileAndDelete(files.get(0)).contains("<loc>https://www.example.com/index.html</loc>"));
+        assertThrows(RuntimeException.class, csg::write, "Double-write is not allowed");
+    }
+
+    @Test
+    void testSingleSitemapLimitAcrossThreads() throws Exception {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).allowMultipleSitemaps(false).maxUrls(100).build());
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int partition = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        csg.addUrl("https://www.example.com/" + partition + "/" + i);
+                        added.incrementAndGet();
+                    } catch (SitemapGeneratorException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(100, added.get(), "URLs beyond maxUrls were accepted");
+        assertEquals(100, rejected.get());
+        List<File> files = csg.write();
+        assertEquals(1, files.size());
+        TestUtil.slurpFileAndDelete(files.get(0));
+    }
+
+    @Test
+    void testBufferModesRejected() {
+        assertThrows(SitemapGeneratorException.class, () -> new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).streaming(true).build()));
+        assertThrows(SitemapGeneratorException.class, () -> new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).asyncFlush(2).build()));
+        assertThrows(SitemapGeneratorException.class, () -> new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).offHeap(true).build()));
+    }
+
+    @Test
+    void testEmptyWrite() {
+        ConcurrentSitemapGenerator<WebSitemapUrl> csg = new ConcurrentSitemapGenerator<>(
+                new WebSitemapGenerator("https://www.example.com", dir));
+
+        assertThrows(RuntimeException.class, csg::write, "Empty write is not allowed");
+    }
+}
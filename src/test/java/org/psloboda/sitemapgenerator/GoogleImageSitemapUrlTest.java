@@ -11,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -167,6 +168,44 @@ class GoogleImageSitemapUrlTest {
         assertThrows(RuntimeException.class, () -> options.images(images), "Too many images allowed");
     }
 
+    @Test
+    void testEscapedOutputUnchanged() {
+        wsg = GoogleImageSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl(new GoogleImageSitemapUrl.Options("https://www.example.com/gallery?a=1&b=2")
+                .images(new Image.ImageBuilder("https://www.example.com/a.jpg?size=big&crop=1")
+                                .title("A & B <1>")
+                                .caption("\"Quoted\" caption")
+                                .geoLocation("Limerick, Ireland")
+                                .license("https://www.example.com/license?x=1&y=2")
+                                .build(),
+                        new Image.ImageBuilder("https://www.example.com/b.jpg").build())
+                .lastMod(LocalDate.of(2020, 1, 2))
+                .changeFreq(ChangeFreq.WEEKLY)
+                .priority(0.7)
+                .build());
+        String expected = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="https://www.sitemaps.org/schemas/sitemap/0.9" xmlns:image="http://www.google.com/schemas/sitemap-image/1.1" >
+                  <url>
+                    <loc>https://www.example.com/gallery?a=1&amp;b=2</loc>
+                    <lastmod>2020-01-02</lastmod>
+                    <changefreq>weekly</changefreq>
+                    <priority>0.7</priority>
+                    <image:image>
+                      <image:loc>https://www.example.com/a.jpg?size=big&amp;crop=1</image:loc>
+                      <image:caption>&quot;Quoted&quot; caption</image:caption>
+                      <image:title>A &amp; B &lt;1&gt;</image:title>
+                      <image:geo_location>Limerick, Ireland</image:geo_location>
+                      <image:license>https://www.example.com/license?x=1&amp;y=2</image:license>
+                    </image:image>
+                    <image:image>
+                      <image:loc>https://www.example.com/b.jpg</image:loc>
+                    </image:image>
+                  </url>
+                </urlset>""";
+        assertEquals(expected, writeSingleSiteMap(wsg));
+    }
+
     private String writeSingleSiteMap(GoogleImageSitemapGenerator wsg) {
         List<File> files = wsg.write();
         assertEquals(1, files.size(), "Too many files: " + files);
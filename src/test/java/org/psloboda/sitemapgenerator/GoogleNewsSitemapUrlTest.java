@@ -9,6 +9,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -129,6 +131,33 @@ class GoogleNewsSitemapUrlTest {
         assertEquals(expected, sitemap);
     }
 
+    @Test
+    void testEscapedOutputUnchanged() {
+        wsg = GoogleNewsSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl(new GoogleNewsSitemapUrl.Options("https://www.example.com/story?id=1&p=2", ZonedDateTime.of(2020, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC), "Cats & Dogs", "The <Example> Times", "en")
+                .keywords("a & b", "c")
+                .genres("Blog", "Opinion")
+                .build());
+        String expected = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="https://www.sitemaps.org/schemas/sitemap/0.9" xmlns:news="http://www.google.com/schemas/sitemap-news/0.9" >
+                  <url>
+                    <loc>https://www.example.com/story?id=1&amp;p=2</loc>
+                    <news:news>
+                      <news:publication>
+                        <news:name>The &lt;Example&gt; Times</news:name>
+                        <news:language>en</news:language>
+                      </news:publication>
+                      <news:genres>Blog, Opinion</news:genres>
+                      <news:publication_date>2020-01-02T03:04:05.000Z</news:publication_date>
+                      <news:title>Cats &amp; Dogs</news:title>
+                      <news:keywords>a &amp; b, c</news:keywords>
+                    </news:news>
+                  </url>
+                </urlset>""";
+        assertEquals(expected, writeSingleSiteMap(wsg));
+    }
+
     private String writeSingleSiteMap(GoogleNewsSitemapGenerator wsg) {
         List<File> files = wsg.write();
         assertEquals(1, files.size(), "Too many files: " + files);
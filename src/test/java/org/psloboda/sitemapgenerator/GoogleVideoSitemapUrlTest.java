@@ -11,7 +11,10 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -184,6 +187,50 @@ class GoogleVideoSitemapUrlTest {
         assertThrows(RuntimeException.class, () -> o.durationInSeconds(Integer.MAX_VALUE), ">8hr duration allowed");
     }
 
+    @Test
+    void testEscapedOutputUnchanged() throws Exception {
+        wsg = GoogleVideoSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl(new GoogleVideoSitemapUrl.Options(new URL("https://www.example.com/video?id=1&t=2"), new URL("https://www.example.com/video.flv?q=1&r=2"))
+                .playerUrl(new URL("https://www.example.com/player.swf?v=1&w=2"), true)
+                .thumbnailUrl(new URL("https://www.example.com/thumb.jpg?s=1&t=2"))
+                .title("Tom & Jerry")
+                .description("<b>Cat</b> & mouse")
+                .rating(4.5)
+                .viewCount(12345)
+                .publicationDate(ZonedDateTime.of(2020, 1, 2, 3, 4, 5, 0, ZoneOffset.ofHours(2)))
+                .tags("one", "two & three")
+                .category("Cartoons & more")
+                .familyFriendly(false)
+                .durationInSeconds(90)
+                .lastMod(Instant.ofEpochMilli(1_500_000_000_000L))
+                .build());
+        // the player URL has always been written unescaped
+        String expected = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="https://www.sitemaps.org/schemas/sitemap/0.9" xmlns:video="http://www.google.com/schemas/sitemap-video/1.1" >
+                  <url>
+                    <loc>https://www.example.com/video?id=1&amp;t=2</loc>
+                    <lastmod>2017-07-14T02:40:00.000Z</lastmod>
+                    <video:video>
+                      <video:content_loc>https://www.example.com/video.flv?q=1&amp;r=2</video:content_loc>
+                      <video:player_loc allow_embed="Yes">https://www.example.com/player.swf?v=1&w=2</video:player_loc>
+                      <video:thumbnail_loc>https://www.example.com/thumb.jpg?s=1&amp;t=2</video:thumbnail_loc>
+                      <video:title>Tom &amp; Jerry</video:title>
+                      <video:description>&lt;b&gt;Cat&lt;/b&gt; &amp; mouse</video:description>
+                      <video:rating>4.5</video:rating>
+                      <video:view_count>12345</video:view_count>
+                      <video:publication_date>2020-01-02T01:04:05.000Z</video:publication_date>
+                      <video:tag>one</video:tag>
+                      <video:tag>two &amp; three</video:tag>
+                      <video:category>Cartoons &amp; more</video:category>
+                      <video:family_friendly>No</video:family_friendly>
+                      <video:duration>90</video:duration>
+                    </video:video>
+                  </url>
+                </urlset>""";
+        assertEquals(expected, writeSingleSiteMap(wsg));
+    }
+
     private String writeSingleSiteMap(GoogleVideoSitemapGenerator wsg) {
         List<File> files = wsg.write();
         assertEquals(1, files.size(), "Too many files: " + files);
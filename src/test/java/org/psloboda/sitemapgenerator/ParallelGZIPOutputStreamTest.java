@@ -0,0 +1,70 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.utils.ParallelGZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelGZIPOutputStreamTest {
+
+    @Test
+    void testManyBlocks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(42);
+        while (sb.length() < 1_000_000) {
+            sb.append("  <url>\n    <loc>https://www.example.com/product/").append(random.nextInt(100000)).append("</loc>\n  </url>\n");
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(compressed, executor, 6, 64 * 1024)) {
+                for (int off = 0; off < data.length; off += 1000) {
+                    out.write(data, off, Math.min(1000, data.length - off));
+                }
+            }
+
+            assertArrayEquals(data, gunzip(compressed.toByteArray()));
+            assertTrue(compressed.size() < data.length / 4, "Poor compression: " + compressed.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testExactBlockBoundary() throws IOException {
+        byte[] data = new byte[2 * ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE];
+        new Random(7).nextBytes(data);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGZIPOutputStream out = new ParallelGZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGZIPOutputStream(compressed).close();
+
+        assertEquals(0, gunzip(compressed.toByteArray()).length);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.generators.ReactiveSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.SitemapShard;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveSitemapGeneratorTest {
+    File dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Optional.ofNullable(dir).map(File::listFiles)
+                .stream()
+                .flatMap(Arrays::stream)
+                .forEach(file -> assertTrue(file.delete()));
+
+        assertTrue(dir.delete());
+        dir = null;
+    }
+
+    @Test
+    void testPublishesShards() throws Exception {
+        ReactiveSitemapGenerator<WebSitemapUrl> g = new ReactiveSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(100).build());
+
+        List<SitemapShard> shards = run(g, 250, null);
+
+        assertEquals(List.of("sitemap1.xml", "sitemap2.xml", "sitemap3.xml"), shards.stream().map(SitemapShard::name).toList());
+        assertEquals(List.of(100, 100, 50), shards.stream().map(SitemapShard::urlCount).toList());
+        for (SitemapShard shard : shards) {
+            assertEquals(Files.size(shard.path()), shard.byteCount(), "Wrong size for " + shard.name());
+        }
+    }
+
+    @Test
+    void testStreamingShardsAreRenumbered() throws Exception {
+        ReactiveSitemapGenerator<WebSitemapUrl> g = new ReactiveSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).streaming(true).maxUrls(100).build());
+
+        List<SitemapShard> shards = run(g, 150, null);
+
+        assertEquals(List.of("sitemap1.xml", "sitemap2.xml"), shards.stream().map(SitemapShard::name).toList());
+        assertEquals(List.of(100, 50), shards.stream().map(SitemapShard::urlCount).toList());
+    }
+
+    @Test
+    void testUpstreamErrorReachesShardSubscribers() {
+        ReactiveSitemapGenerator<WebSitemapUrl> g = new ReactiveSitemapGenerator<>(
+                new WebSitemapGenerator("https://www.example.com", dir));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> run(g, 10, new IllegalStateException("boom")));
+
+        assertEquals("boom", e.getCause().getMessage());
+    }
+
+    /**
+     * Publishes the given number of URLs to the generator, then completes or fails the upstream
+     *
+     * @return the shards published
+     */
+    private static List<SitemapShard> run(ReactiveSitemapGenerator<WebSitemapUrl> g, int count, Throwable error) throws Exception {
+        List<SitemapShard> shards = new CopyOnWriteArrayList<>();
+        CompletableFuture<List<SitemapShard>> done = new CompletableFuture<>();
+        g.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(SitemapShard shard) {
+                shards.add(shard);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(shards);
+            }
+        });
+
+        try (SubmissionPublisher<WebSitemapUrl> urls = new SubmissionPublisher<>()) {
+            urls.subscribe(g);
+            for (int i = 0; i < count; i++) {
+                urls.submit(new WebSitemapUrl("https://www.example.com/" + i));
+            }
+            if (error != null) urls.closeExceptionally(error);
+        }
+        return done.get(10, TimeUnit.SECONDS);
+    }
+}
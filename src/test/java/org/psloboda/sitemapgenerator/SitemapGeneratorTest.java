@@ -1,7 +1,11 @@
 package org.psloboda.sitemapgenerator;
 
 import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.ConcurrentSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.ISitemapUrlRenderer;
 import org.psloboda.sitemapgenerator.generators.SitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.SitemapGeneratorBuilder;
 import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
 import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
@@ -13,10 +17,27 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -183,6 +204,48 @@ class SitemapGeneratorTest {
         assertEquals(expected, sitemap);
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    void testDeprecatedRenderWithAdditionalData() {
+        ISitemapUrlRenderer<WebSitemapUrl> renderer = new ISitemapUrlRenderer<>() {
+            @Override
+            public Class<WebSitemapUrl> getUrlClass() {
+                return WebSitemapUrl.class;
+            }
+
+            @Override
+            public String getXmlNamespaces() {
+                return null;
+            }
+
+            @Override
+            public void render(WebSitemapUrl url, StringBuilder sb, W3CDateTimeFormatter dateTimeFormatter) {
+                render(url, sb, dateTimeFormatter, null);
+            }
+        };
+        WebSitemapUrl url = new WebSitemapUrl.Options("https://www.example.com/a?b=1&c=2")
+                .lastMod(LocalDate.of(2020, 1, 2))
+                .changeFreq(ChangeFreq.DAILY)
+                .priority(0.5)
+                .build();
+        StringBuilder sb = new StringBuilder();
+        renderer.render(url, sb, new W3CDateTimeFormatter(), "      <x:extra>1</x:extra>\n");
+        renderer.render(new WebSitemapUrl("https://www.example.com/plain"), sb, new W3CDateTimeFormatter(), null);
+        String expected = """
+                  <url>
+                    <loc>https://www.example.com/a?b=1&amp;c=2</loc>
+                    <lastmod>2020-01-02</lastmod>
+                    <changefreq>daily</changefreq>
+                    <priority>0.5</priority>
+                      <x:extra>1</x:extra>
+                  </url>
+                  <url>
+                    <loc>https://www.example.com/plain</loc>
+                  </url>
+                """;
+        assertEquals(expected, sb.toString());
+    }
+
     @Test
     void testBadUrl() {
         wsg = new WebSitemapGenerator("https://www.example.com", dir);
@@ -381,6 +444,31 @@ class SitemapGeneratorTest {
         assertEquals(SITEMAP1, actual, "sitemap didn't match");
     }
 
+    @Test
+    void testParallelGzip() throws IOException {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .gzip(true)
+                .gzipExecutor(ForkJoinPool.commonPool())
+                .build();
+        for (int i = 0; i < 10; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        List<File> files = wsg.write();
+
+        assertEquals(1, files.size(), "Too many files: " + files);
+        assertEquals("sitemap.xml.gz", files.get(0).getName(), "Sitemap misnamed");
+
+        File file = files.get(0);
+        file.deleteOnExit();
+        String actual;
+        try (GZIPInputStream gzipStream = new GZIPInputStream(new FileInputStream(file))) {
+            actual = new String(gzipStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(file.delete());
+
+        assertEquals(SITEMAP1, actual, "sitemap didn't match");
+    }
+
     @Test
     void testBaseDirIsNullThrowsNullPointerException() {
         wsg = WebSitemapGenerator.builder("https://www.example.com", null)
@@ -448,6 +536,646 @@ class SitemapGeneratorTest {
         assertEquals(SITEMAP1, sitemap);
     }
 
+    @Test
+    void testStreamingSingleSitemap() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .streaming(true)
+                .autoValidate(true)
+                .maxUrls(10)
+                .build();
+
+        for (int i = 0; i < 10; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        String sitemap = writeSingleSiteMap(wsg);
+
+        assertEquals(SITEMAP1, sitemap);
+    }
+
+    @Test
+    void testStreamingMaxUrlsTimesTwoPlusOne() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .streaming(true)
+                .autoValidate(true)
+                .maxUrls(10)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        wsg.addUrl("https://www.example.com/just-one-more");
+
+        assertTrue(new File(dir, "sitemap1.xml").exists(), "first sitemap was not renumbered");
+        assertFalse(new File(dir, "sitemap.xml").exists(), "unnumbered sitemap left behind");
+
+        List<File> files = wsg.write();
+
+        assertEquals(3, files.size());
+        assertEquals("sitemap1.xml", files.get(0).getName(), "First sitemap was misnamed");
+        assertEquals("sitemap2.xml", files.get(1).getName(), "Second sitemap was misnamed");
+        assertEquals("sitemap3.xml", files.get(2).getName(), "Third sitemap was misnamed");
+        assertEquals(SITEMAP1, TestUtil.slurpFileAndDelete(files.get(0)), "sitemap1 didn't match");
+        assertEquals(SITEMAP2, TestUtil.slurpFileAndDelete(files.get(1)), "sitemap2 didn't match");
+        assertEquals(SITEMAP_PLUS_ONE, TestUtil.slurpFileAndDelete(files.get(2)), "sitemap3 didn't match");
+    }
+
+    @Test
+    void testStreamingEmptySitemap() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .streaming(true)
+                .build();
+
+        assertThrows(RuntimeException.class, () -> wsg.write(), "Empty write is not allowed");
+    }
+
+    @Test
+    void testMaxFileSize() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .autoValidate(true)
+                .maxFileSize(SITEMAP1.length())
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        List<File> files = wsg.write();
+
+        assertEquals(3, files.size());
+        assertEquals("sitemap1.xml", files.get(0).getName(), "First sitemap was misnamed");
+        assertEquals("sitemap3.xml", files.get(2).getName(), "Third sitemap was misnamed");
+        for (File file : files) {
+            assertTrue(file.length() <= SITEMAP1.length(), "Sitemap too large: " + file);
+        }
+        assertEquals(SITEMAP1, TestUtil.slurpFileAndDelete(files.get(0)), "sitemap1 didn't match");
+    }
+
+    @Test
+    void testStreamingGzipMaxFileSize() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .streaming(true)
+                .gzip(true)
+                .maxFileSize(SITEMAP1.length())
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        List<File> files = wsg.write();
+
+        assertEquals(3, files.size());
+        assertEquals("sitemap1.xml.gz", files.get(0).getName(), "First sitemap was misnamed");
+        assertEquals("sitemap3.xml.gz", files.get(2).getName(), "Third sitemap was misnamed");
+    }
+
+    @Test
+    void testMaxFileSizeTooSmallForOneUrl() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .maxFileSize(100)
+                .build();
+        wsg.addUrl("https://www.example.com/index.html");
+
+        assertThrows(RuntimeException.class, () -> wsg.write(), "URL larger than a sitemap was allowed");
+    }
+
+    @Test
+    void testGzipAndRenderExecutorShared() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertThrows(SitemapGeneratorException.class, () -> WebSitemapGenerator.builder("https://www.example.com", dir)
+                    .gzip(true)
+                    .gzipExecutor(executor)
+                    .renderExecutor(executor)
+                    .build(), "Bounded pool shared by renders and gzip");
+        } finally {
+            executor.shutdown();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                    .gzip(true)
+                    .gzipExecutor(pool)
+                    .renderExecutor(pool)
+                    .maxUrls(10)
+                    .build();
+            for (int i = 0; i < 200; i++) {
+                wsg.addUrl("https://www.example.com/" + i);
+            }
+            List<File> files = assertTimeoutPreemptively(Duration.ofSeconds(30), wsg::write, "Shared pool deadlocked");
+
+            assertEquals(20, files.size());
+            try (GZIPInputStream gzipStream = new GZIPInputStream(new FileInputStream(files.get(1)))) {
+                assertEquals(SITEMAP2, new String(gzipStream.readAllBytes(), StandardCharsets.UTF_8), "sitemap didn't match");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRenderExecutorMaxUrlsTimesTwoPlusOne() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                    .renderExecutor(executor)
+                    .autoValidate(true)
+                    .maxUrls(10)
+                    .build();
+
+            for (int i = 0; i < 20; i++) {
+                wsg.addUrl("https://www.example.com/" + i);
+            }
+            wsg.addUrl("https://www.example.com/just-one-more");
+            List<File> files = wsg.write();
+
+            assertEquals(3, files.size());
+            assertEquals("sitemap1.xml", files.get(0).getName(), "First sitemap was misnamed");
+            assertEquals("sitemap2.xml", files.get(1).getName(), "Second sitemap was misnamed");
+            assertEquals("sitemap3.xml", files.get(2).getName(), "Third sitemap was misnamed");
+            assertEquals(SITEMAP1, TestUtil.slurpFileAndDelete(files.get(0)), "sitemap1 didn't match");
+            assertEquals(SITEMAP2, TestUtil.slurpFileAndDelete(files.get(1)), "sitemap2 didn't match");
+            assertEquals(SITEMAP_PLUS_ONE, TestUtil.slurpFileAndDelete(files.get(2)), "sitemap3 didn't match");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testRenderExecutorWriteAsStrings() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .renderExecutor(ForkJoinPool.commonPool())
+                .maxUrls(10)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        wsg.addUrl("https://www.example.com/just-one-more");
+
+        assertEquals(List.of(SITEMAP1, SITEMAP2, SITEMAP_PLUS_ONE), wsg.writeAsStrings());
+    }
+
+    @Test
+    void testAsyncFlush() throws Exception {
+        List<CompletableFuture<File>> published = new ArrayList<>();
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .asyncFlush(1, published::add)
+                .autoValidate(true)
+                .maxUrls(10)
+                .build();
+
+        for (int i = 0; i < 20; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        wsg.addUrl("https://www.example.com/just-one-more");
+
+        // the first buffer was named when the second was handed off
+        assertEquals(1, published.size());
+        assertEquals("sitemap1.xml", published.get(0).get().getName(), "First sitemap was misnamed");
+
+        List<File> files = wsg.write();
+
+        List<CompletableFuture<File>> flushes = wsg.getAsyncFlushes();
+        assertEquals(published, flushes);
+        assertEquals(2, flushes.size());
+        assertEquals(3, files.size());
+        assertEquals("sitemap2.xml", flushes.get(1).get().getName(), "Second sitemap was misnamed");
+        assertEquals("sitemap3.xml", files.get(2).getName(), "Third sitemap was misnamed");
+        assertEquals(SITEMAP1, TestUtil.slurpFileAndDelete(files.get(0)), "sitemap1 didn't match");
+        assertEquals(SITEMAP2, TestUtil.slurpFileAndDelete(files.get(1)), "sitemap2 didn't match");
+        assertEquals(SITEMAP_PLUS_ONE, TestUtil.slurpFileAndDelete(files.get(2)), "sitemap3 didn't match");
+    }
+
+    @Test
+    void testAsyncFlushFailureIsReported() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .asyncFlush(1)
+                .maxUrls(10)
+                .maxFileSize(100)
+                .build();
+
+        for (int i = 0; i < 11; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        assertThrows(RuntimeException.class, () -> wsg.write(), "Failed flush was not reported");
+    }
+
+    @Test
+    void testAsyncFlushSplitsAndNumbersLikeWritingDirectly() throws IOException {
+        List<List<String>> runs = new ArrayList<>();
+        for (int asyncFlush : new int[]{0, 2}) {
+            String prefix = "sitemap-" + asyncFlush + "-";
+            WebSitemapGenerator generator = WebSitemapGenerator.builder("https://www.example.com", dir)
+                    .fileNamePrefix(prefix)
+                    .asyncFlush(asyncFlush)
+                    .maxUrls(10)
+                    .maxFileSize(500)
+                    .build();
+            for (int i = 0; i < 35; i++) {
+                generator.addUrl("https://www.example.com/" + i);
+            }
+            List<String> run = new ArrayList<>();
+            for (File file : generator.write()) {
+                run.add(file.getName().substring(prefix.length()) + "\n" + Files.readString(file.toPath()));
+            }
+            runs.add(run);
+        }
+
+        assertEquals(7, runs.get(0).size(), "Sitemaps weren't split by size");
+        assertEquals(runs.get(0), runs.get(1), "Background flushes were split or numbered differently");
+    }
+
+    @Test
+    void testLargeNonAsciiSitemapMatchesStrings() throws IOException {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir).streaming(true).build();
+        WebSitemapGenerator inMemory = WebSitemapGenerator.builder("https://www.example.com", null).build();
+        for (int i = 0; i < 10000; i++) {
+            String url = "https://www.example.com/stra\u00dfe/\u65e5\u672c/\ud83d\ude00/" + i;
+            wsg.addUrl(url);
+            inMemory.addUrl(url);
+        }
+
+        List<File> files = wsg.write();
+
+        assertEquals(1, files.size(), "Too many files: " + files);
+        assertEquals(inMemory.writeAsStrings().get(0), Files.readString(files.get(0).toPath()), "Sitemap didn't match");
+    }
+
+    @Test
+    void testIncrementalLeavesUnchangedSitemapsAlone() throws IOException {
+        List<File> files = incrementalRun(21, -1);
+        assertEquals(3, files.size(), "First run should write every sitemap");
+        List<String> lastMods = indexLastMods();
+        FileTime old = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+        for (File file : files) {
+            Files.setLastModifiedTime(file.toPath(), old);
+        }
+
+        List<File> changed = incrementalRun(21, 15);
+
+        assertEquals(List.of(new File(dir, "sitemap2.xml")), changed, "Only the second sitemap changed");
+        assertEquals(old, Files.getLastModifiedTime(new File(dir, "sitemap1.xml").toPath()), "sitemap1 was rewritten");
+        assertNotEquals(old, Files.getLastModifiedTime(new File(dir, "sitemap2.xml").toPath()), "sitemap2 wasn't rewritten");
+        List<String> newLastMods = indexLastMods();
+        assertEquals(lastMods.get(0), newLastMods.get(0), "sitemap1 should keep its lastmod");
+        assertEquals(lastMods.get(2), newLastMods.get(2), "sitemap3 should keep its lastmod");
+
+        assertEquals(List.of(), incrementalRun(20, 15), "Nothing changed in the first two sitemaps");
+        assertFalse(new File(dir, "sitemap3.xml").exists(), "Sitemap from the previous run wasn't deleted");
+    }
+
+    @Test
+    void testDeduplicateSkipsRepeatedUrls() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .deduplicate(true)
+                .build();
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < 5000; i++) {
+                wsg.addUrl("https://www.example.com/" + i);
+            }
+        }
+
+        String sitemap = wsg.writeAsStrings().get(0);
+
+        assertEquals(5000, sitemap.split("<loc>").length - 1, "Duplicates weren't skipped");
+        assertTrue(sitemap.endsWith("<loc>https://www.example.com/4999</loc>\n  </url>\n</urlset>"), "URLs are out of order");
+    }
+
+    @Test
+    void testDeduplicateOnlyRecordsAddedUrls() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .deduplicate(true)
+                .maxUrls(1)
+                .allowMultipleSitemaps(false)
+                .build();
+        wsg.addUrl("https://www.example.com/a");
+
+        assertThrows(SitemapGeneratorException.class, () -> wsg.addUrl("https://www.example.com/b"));
+        assertThrows(SitemapGeneratorException.class, () -> wsg.addUrl("https://www.example.com/b"),
+                "A URL that failed to be added was skipped as a duplicate");
+        wsg.addUrl("https://www.example.com/a");
+    }
+
+    @Test
+    void testDeduplicateWithBloomFilter() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .deduplicate(10_000, 0.001)
+                .build();
+        for (int i = 0; i < 10_000; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        int count = wsg.writeAsStrings().get(0).split("<loc>").length - 1;
+
+        assertTrue(count > 9_950 && count <= 10_000, "Unexpected number of URLs: " + count);
+    }
+
+    @Test
+    void testSpillToDiskMatchesInMemory() {
+        WebSitemapGenerator inMemory = WebSitemapGenerator.builder("https://www.example.com", null)
+                .maxUrls(10)
+                .build();
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .maxUrls(10)
+                .spillDir(dir.toPath())
+                .build();
+        for (int i = 0; i < 25; i++) {
+            inMemory.addUrl("https://www.example.com/" + i);
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        List<String> expected = inMemory.writeAsStrings();
+
+        assertEquals(3, expected.size());
+        assertEquals(expected, wsg.writeAsStrings(), "Spilled sitemaps didn't match");
+        assertEquals(0, dir.listFiles().length, "Spill file wasn't deleted");
+        assertThrows(SitemapGeneratorException.class, wsg::writeAsStrings, "Deleted spill file was read again");
+    }
+
+    @Test
+    void testSpillToDiskStreamed() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .maxUrls(10)
+                .spillDir(dir.toPath())
+                .build();
+        for (int i = 0; i < 25; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        try (Stream<String> sitemaps = wsg.streamAsStrings()) {
+            assertEquals(List.of(SITEMAP1, SITEMAP2), sitemaps.limit(2).toList(), "Streamed sitemaps didn't match");
+        }
+        assertEquals(0, dir.listFiles().length, "Spill file wasn't deleted");
+        assertThrows(SitemapGeneratorException.class, wsg::writeAsStrings, "Closed spill file was read again");
+    }
+
+    @Test
+    void testSpillToDiskNeedsNoBaseDir() {
+        assertThrows(RuntimeException.class,
+                () -> WebSitemapGenerator.builder("https://www.example.com", dir).spillToDisk(true).build(),
+                "Spilling is only for the in-memory mode");
+    }
+
+    @Test
+    void testUrlsAddedAsStringsRenderLikeParsedUrls() throws Exception {
+        String[] urls = {"https://www.example.com", "https://www.example.com/a?b=1&c=<2>#top", "https://www.example.com?q",
+                "HTTPS://www.example.com/upper", "https://WWW.EXAMPLE.COM/host", "http://www.example.com:8080/port",
+                "https://www.example.com/café"};
+        WebSitemapGenerator parsed = new WebSitemapGenerator("https://www.example.com");
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null).deduplicate(true).build();
+        for (String url : urls) {
+            parsed.addUrl(new URL(url));
+            wsg.addUrl(url);
+            wsg.addUrl(new URL(url));
+        }
+
+        assertEquals(parsed.writeAsStrings(), wsg.writeAsStrings());
+        assertThrows(RuntimeException.class, () -> wsg.addUrl("https://www.example.com.evil.org/"), "wrong domain allowed to be added");
+    }
+
+    @Test
+    void testBufferedUrlsRenderLikeUrlObjects() throws Exception {
+        List<WebSitemapUrl> urls = List.of(
+                new WebSitemapUrl("https://www.example.com/plain?a=1&b=2"),
+                new WebSitemapUrl(new URL("https://www.example.com/parsed")),
+                new WebSitemapUrl.Options("https://www.example.com/café").lastMod(LocalDate.of(2021, 3, 4)).priority(0.3).build(),
+                new WebSitemapUrl.Options("https://www.example.com/local").lastMod(LocalDateTime.of(2021, 3, 4, 5, 6, 7, 891_234_567))
+                        .changeFreq(ChangeFreq.WEEKLY).priority(1.0).build(),
+                new WebSitemapUrl.Options("https://www.example.com/instant").lastMod(Instant.parse("1969-12-31T23:59:59.999Z"))
+                        .changeFreq(ChangeFreq.NEVER).priority(0.0).build(),
+                new WebSitemapUrl.Options("https://www.example.com/zoned")
+                        .lastMod(ZonedDateTime.of(2021, 10, 31, 2, 30, 0, 0, ZoneId.of("Europe/Berlin"))).build(),
+                new WebSitemapUrl.Options("https://www.example.com/odd-priority").priority(0.25).build(),
+                new WebSitemapUrl.Options("https://www.example.com/far").lastMod(LocalDateTime.of(12021, 1, 1, 0, 0)).build());
+        W3CDateTimeFormatter formatter = new W3CDateTimeFormatter(ZoneId.of("America/New_York"));
+        ConcurrentSitemapGenerator<WebSitemapUrl> objects = new ConcurrentSitemapGenerator<>(
+                WebSitemapGenerator.builder("https://www.example.com", dir).dateFormat(formatter).build());
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null).dateFormat(formatter).build();
+        objects.addUrls(urls);
+        wsg.addUrls(urls);
+        wsg.addUrl("https://www.example.com/relative");
+        objects.addUrl("https://www.example.com/relative");
+
+        String expected = Files.readString(objects.write().get(0).toPath());
+
+        assertEquals(expected, wsg.writeAsStrings().get(0));
+    }
+
+    @Test
+    void testPrimitiveAddUrlMatchesOptions() {
+        WebSitemapGenerator options = new WebSitemapGenerator("https://www.example.com");
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null).deduplicate(true).build();
+        String[] locs = {"https://www.example.com/a&b", "https://WWW.example.com/upper", "https://www.example.com/café"};
+        float[] priorities = {0.3f, 1f, 0.25f};
+        for (int i = 0; i < locs.length; i++) {
+            long lastMod = 1_600_000_000_123L + i;
+            options.addUrl(new WebSitemapUrl.Options(locs[i]).lastMod(Instant.ofEpochMilli(lastMod))
+                    .changeFreq(ChangeFreq.DAILY).priority(Double.valueOf(Float.toString(priorities[i]))).build());
+            wsg.addUrl(new StringBuilder(locs[i]), lastMod, ChangeFreq.DAILY, priorities[i]);
+            wsg.addUrl(locs[i], lastMod, ChangeFreq.DAILY, priorities[i]);
+        }
+        options.addUrl("https://www.example.com/bare");
+        wsg.addUrl("https://www.example.com/bare", WebSitemapGenerator.NO_LAST_MOD, null, WebSitemapGenerator.NO_PRIORITY);
+
+        assertEquals(options.writeAsStrings(), wsg.writeAsStrings());
+        assertThrows(RuntimeException.class, () -> wsg.addUrl("https://example.com/", 0L), "wrong domain allowed to be added");
+        assertThrows(IllegalArgumentException.class, () -> new WebSitemapGenerator("https://www.example.com").addUrl("https://www.example.com/", 0L, null, 1.5f));
+    }
+
+    @Test
+    void testStreamingPrimitiveAddUrl() {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir).streaming(true).maxUrls(2).build();
+        for (int i = 0; i < 3; i++) {
+            wsg.addUrl("https://www.example.com/" + i, 0L);
+        }
+
+        List<File> files = wsg.write();
+
+        assertEquals(2, files.size());
+        assertTrue(TestUtil.slurpFileAndDelete(files.get(0)).contains(
+                "<loc>https://www.example.com/1</loc>\n    <lastmod>1970-01-01T00:00:00.000Z</lastmod>"));
+        assertTrue(TestUtil.slurpFileAndDelete(files.get(1)).contains("<loc>https://www.example.com/2</loc>"));
+    }
+
+    @Test
+    void testTemplateUrlsMatchUrlsAddedOneAtATime() throws IOException {
+        long[] ids = LongStream.range(0, 47).map(i -> i * 7 - 20).toArray();
+        long[] lastMods = LongStream.range(0, 47).map(i -> i % 5 == 0 ? WebSitemapGenerator.NO_LAST_MOD : 1_500_000_000_000L + i).toArray();
+        List<UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>>> modes = List.of(
+                b -> b,
+                b -> b.renderExecutor(ForkJoinPool.commonPool()),
+                b -> b.asyncFlush(2),
+                b -> b.streaming(true),
+                b -> b.deduplicate(true),
+                b -> b.maxFileSize(2000));
+        for (UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>> mode : modes) {
+            List<String> expected = new ArrayList<>();
+            List<String> actual = new ArrayList<>();
+            for (boolean template : new boolean[]{false, true}) {
+                wsg = mode.apply(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(10)).build();
+                wsg.addUrl("https://www.example.com/first");
+                if (template) {
+                    wsg.addUrls("https://www.example.com/p?id={id}&x", ids, lastMods);
+                } else {
+                    for (int i = 0; i < ids.length; i++) {
+                        WebSitemapUrl.Options options = new WebSitemapUrl.Options("https://www.example.com/p?id=" + ids[i] + "&x");
+                        if (lastMods[i] != WebSitemapGenerator.NO_LAST_MOD) options.lastMod(Instant.ofEpochMilli(lastMods[i]));
+                        wsg.addUrl(options.build());
+                    }
+                }
+                for (File file : wsg.write()) {
+                    (template ? actual : expected).add(Files.readString(file.toPath()));
+                    assertTrue(file.delete());
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testTemplateUrlsInMemory() {
+        WebSitemapGenerator expected = WebSitemapGenerator.builder("https://www.example.com", null).maxUrls(10).build();
+        WebSitemapGenerator spilled = WebSitemapGenerator.builder("https://www.example.com", null).maxUrls(10).spillToDisk(true).build();
+        wsg = WebSitemapGenerator.builder("https://WWW.example.com", null).maxUrls(10).build();
+        for (long id : new long[]{Long.MIN_VALUE, -1, 0, 9, Long.MAX_VALUE}) {
+            expected.addUrl("https://www.example.com/product/" + id);
+        }
+        for (int i = 0; i < 25; i++) {
+            expected.addUrl("https://www.example.com/product/" + i);
+        }
+
+        for (WebSitemapGenerator g : List.of(spilled, wsg)) {
+            g.addUrls("https://www.example.com/product/{id}", new long[]{Long.MIN_VALUE, -1, 0, 9, Long.MAX_VALUE});
+            g.addUrls("https://www.example.com/product/{id}", LongStream.range(0, 25));
+            assertEquals(expected.writeAsStrings(), g.writeAsStrings());
+        }
+        assertThrows(IllegalArgumentException.class, () -> wsg.addUrls("https://www.example.com/product", new long[]{1}));
+        assertThrows(RuntimeException.class, () -> wsg.addUrls("https://example.com/{id}", new long[]{1}), "wrong domain allowed to be added");
+    }
+
+    @Test
+    void testTemplateRangesHoldExtremeIds() throws IOException {
+        // past the first four, the ids go out as ranges of four
+        long[] ids = {1, 2, 3, 4, Long.MIN_VALUE, -1, 0, Long.MAX_VALUE, -1_000_000_000_000L, 7, 8, 9, 10};
+        String template = "https://www.example.com/p/{id}.html";
+        assertEquals(
+                writeIds(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(4), template, ids, false),
+                writeIds(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(4), template, ids, true));
+    }
+
+    @Test
+    void testTemplateNotUnderBaseUrlAsWritten() throws IOException {
+        // the host is written differently, so every id is added as a parsed URL instead of in a range
+        long[] ids = LongStream.range(0, 25).toArray();
+        String template = "https://www.example.com/p/{id}";
+        assertEquals(
+                writeIds(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(4), template, ids, false),
+                writeIds(WebSitemapGenerator.builder("https://WWW.example.com", dir).maxUrls(4), template, ids, true));
+        assertThrows(RuntimeException.class, () -> wsg.addUrls("https://example.org/{id}", ids), "wrong domain allowed to be added");
+    }
+
+    @Test
+    void testTemplateRangesSplitBySize() throws IOException {
+        // room for six URLs in a file, so each range of ten is split in two
+        long[] ids = LongStream.range(0, 45).toArray();
+        String template = "https://www.example.com/{id}";
+        List<UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>>> modes = List.of(
+                b -> b,
+                b -> b.renderExecutor(ForkJoinPool.commonPool()));
+        for (UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>> mode : modes) {
+            List<String> expected = writeIds(mode.apply(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(10).maxFileSize(500)), template, ids, false);
+            assertEquals(9, expected.size(), "Sitemaps weren't split by size");
+            assertEquals(expected, writeIds(mode.apply(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(10).maxFileSize(500)), template, ids, true));
+        }
+    }
+
+    @Test
+    void testOffHeapUrlsSpanChunks() throws IOException {
+        // each buffer fills several 64KB chunks, and the big URL needs a chunk of its own
+        String big = "https://www.example.com/big/" + "x".repeat(70_000);
+        List<UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>>> modes = List.of(
+                b -> b,
+                b -> b.renderExecutor(ForkJoinPool.commonPool()),
+                b -> b.asyncFlush(2));
+        for (UnaryOperator<SitemapGeneratorBuilder<WebSitemapGenerator>> mode : modes) {
+            List<List<String>> runs = new ArrayList<>();
+            for (boolean offHeap : new boolean[]{false, true}) {
+                wsg = mode.apply(WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(5000).offHeap(offHeap)).build();
+                for (int i = 0; i < 12_000; i++) {
+                    wsg.addUrl("https://www.example.com/café/" + i + "?a&b");
+                    if (i == 2500 || i == 7000) wsg.addUrl(big);
+                }
+                runs.add(readAndDelete(wsg.write()));
+            }
+            assertEquals(3, runs.get(0).size());
+            assertEquals(runs.get(0), runs.get(1), "Off-heap sitemaps didn't match");
+        }
+    }
+
+    @Test
+    void testOffHeapUrlsRenderBackAsStrings() {
+        WebSitemapGenerator onHeap = WebSitemapGenerator.builder("https://www.example.com", null).maxUrls(10).build();
+        wsg = WebSitemapGenerator.builder("https://www.example.com", null).maxUrls(10).offHeap(true).build();
+        for (WebSitemapGenerator g : List.of(onHeap, wsg)) {
+            g.addUrls("https://www.example.com/p/{id}", LongStream.range(0, 25).toArray());
+            g.addUrl("https://www.example.com/café?a&b");
+        }
+        assertEquals(onHeap.writeAsStrings(), wsg.writeAsStrings());
+    }
+
+    /**
+     * Writes the ids through the template, or as URLs added one at a time
+     *
+     * @return the name and content of each sitemap
+     */
+    private List<String> writeIds(SitemapGeneratorBuilder<WebSitemapGenerator> builder, String template, long[] ids, boolean asTemplate) throws IOException {
+        wsg = builder.build();
+        if (asTemplate) {
+            wsg.addUrls(template, ids);
+        } else {
+            for (long id : ids) {
+                wsg.addUrl(template.replace("{id}", Long.toString(id)));
+            }
+        }
+        return readAndDelete(wsg.write());
+    }
+
+    private static List<String> readAndDelete(List<File> files) throws IOException {
+        List<String> sitemaps = new ArrayList<>();
+        for (File file : files) {
+            sitemaps.add(file.getName() + "\n" + Files.readString(file.toPath()));
+            assertTrue(file.delete());
+        }
+        return sitemaps;
+    }
+
+    private List<String> indexLastMods() {
+        return Arrays.stream(wsg.writeSitemapsWithIndexAsString().split("<lastmod>"))
+                .skip(1)
+                .map(s -> s.substring(0, s.indexOf('<')))
+                .toList();
+    }
+
+    /**
+     * Streams the given number of URLs in incremental mode, replacing the URL at {@code changedIndex}
+     *
+     * @return the sitemaps that changed
+     */
+    private List<File> incrementalRun(int count, int changedIndex) {
+        wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .incremental(true)
+                .streaming(true)
+                .maxUrls(10)
+                .build();
+        for (int i = 0; i < count; i++) {
+            wsg.addUrl("https://www.example.com/" + (i == changedIndex ? "changed" : i));
+        }
+        return wsg.write();
+    }
+
     private String writeSingleSiteMap(WebSitemapGenerator wsg) {
         List<File> files = wsg.write();
         assertEquals(1, files.size(), "Too many files: " + files);
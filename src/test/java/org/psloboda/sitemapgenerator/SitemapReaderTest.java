@@ -0,0 +1,250 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.google.image.GoogleImageSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.google.image.GoogleImageSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.google.image.Image;
+import org.psloboda.sitemapgenerator.generators.google.news.GoogleNewsSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.google.news.GoogleNewsSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.google.video.GoogleVideoSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.google.video.GoogleVideoSitemapUrl;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.psloboda.sitemapgenerator.readers.SitemapReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitemapReaderTest {
+    File dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = File.createTempFile(this.getClass().getSimpleName(), "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        dir.deleteOnExit();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Optional.ofNullable(dir).map(File::listFiles)
+                .stream()
+                .flatMap(Arrays::stream)
+                .forEach(File::delete);
+        assertTrue(dir.delete());
+        dir = null;
+    }
+
+    @Test
+    void testReadGzippedIndex() throws IOException {
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .gzip(true)
+                .maxUrls(10)
+                .build();
+        for (int i = 0; i < 25; i++) {
+            wsg.addUrl(new WebSitemapUrl.Options("https://www.example.com/" + i)
+                    .lastMod(LocalDate.of(2020, 1, 1))
+                    .changeFreq(ChangeFreq.DAILY)
+                    .priority(0.5)
+                    .build());
+        }
+        wsg.write();
+        wsg.writeSitemapsWithIndex();
+
+        List<WebSitemapUrl> urls;
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, "sitemap_index.xml").toPath())) {
+            urls = stream.toList();
+        }
+
+        assertEquals(25, urls.size());
+        for (int i = 0; i < 25; i++) {
+            WebSitemapUrl url = urls.get(i);
+            assertEquals("https://www.example.com/" + i, url.getUrl().toString(), "URLs out of order");
+            assertEquals(LocalDate.of(2020, 1, 1), url.getLastMod());
+            assertEquals(ChangeFreq.DAILY, url.getChangeFreq());
+            assertEquals(0.5, url.getPriority());
+        }
+    }
+
+    @Test
+    void testReadIndexOfGoogleSitemaps() throws IOException {
+        GoogleImageSitemapGenerator images = GoogleImageSitemapGenerator.builder("https://www.example.com", dir)
+                .fileNamePrefix("images")
+                .build();
+        images.addUrl(new GoogleImageSitemapUrl.Options("https://www.example.com/gallery")
+                .images(new Image.ImageBuilder("https://www.example.com/a.jpg").title("A & B").caption("Caption").build())
+                .build());
+        images.write();
+
+        GoogleVideoSitemapGenerator videos = GoogleVideoSitemapGenerator.builder("https://www.example.com", dir)
+                .fileNamePrefix("videos")
+                .build();
+        videos.addUrl(new GoogleVideoSitemapUrl.Options(new URL("https://www.example.com/video"), new URL("https://www.example.com/video.flv"))
+                .title("Video")
+                .tags("one", "two")
+                .durationInSeconds(60)
+                .familyFriendly(true)
+                .build());
+        videos.write();
+
+        GoogleNewsSitemapGenerator news = GoogleNewsSitemapGenerator.builder("https://www.example.com", dir)
+                .fileNamePrefix("news")
+                .build();
+        news.addUrl(new GoogleNewsSitemapUrl.Options("https://www.example.com/story", Instant.EPOCH, "Story", "The Example Times", "en")
+                .keywords("a, b")
+                .build());
+        news.write();
+
+        String outer = index("images.xml", "videos.xml", "news.xml");
+
+        List<WebSitemapUrl> read;
+        try (SitemapReader reader = new SitemapReader(location -> Files.newInputStream(dir.toPath().resolve(location.getPath().substring(1))), 4);
+             Stream<WebSitemapUrl> stream = reader.read(new ByteArrayInputStream(outer.getBytes(StandardCharsets.UTF_8)))) {
+            read = stream.toList();
+        }
+
+        assertEquals(3, read.size());
+        GoogleImageSitemapUrl image = assertInstanceOf(GoogleImageSitemapUrl.class, read.get(0));
+        assertEquals("A & B", image.getImages().get(0).getTitle());
+        assertEquals("https://www.example.com/a.jpg", image.getImages().get(0).getUrl().toString());
+        GoogleVideoSitemapUrl video = assertInstanceOf(GoogleVideoSitemapUrl.class, read.get(1));
+        assertEquals(List.of("one", "two"), video.getTags());
+        assertEquals(60, video.getDurationInSeconds());
+        assertEquals("Yes", video.getFamilyFriendly());
+        GoogleNewsSitemapUrl story = assertInstanceOf(GoogleNewsSitemapUrl.class, read.get(2));
+        assertEquals("The Example Times", story.getPublication().getName());
+        assertEquals("a, b", story.getKeywords());
+        assertEquals(Instant.EPOCH, Instant.from(story.getPublicationDate()));
+    }
+
+    @Test
+    void testClosedReaderStopsReading() {
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", dir)
+                .maxUrls(10)
+                .build();
+        for (int i = 0; i < 25; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+        wsg.write();
+        wsg.writeSitemapsWithIndex();
+        Path index = new File(dir, "sitemap_index.xml").toPath();
+
+        SitemapReader reader = new SitemapReader(null, 1);
+        try (Stream<WebSitemapUrl> stream = reader.read(index)) {
+            Iterator<WebSitemapUrl> urls = stream.iterator();
+            assertEquals("https://www.example.com/0", urls.next().getUrl().toString());
+            reader.close();
+            // the rest of the first sitemap is parsed already, the next one never starts
+            assertThrows(SitemapGeneratorException.class, () -> urls.forEachRemaining(url -> {
+            }));
+        }
+        assertThrows(SitemapGeneratorException.class, () -> reader.read(index).toList(), "Closed reader was used");
+    }
+
+    @Test
+    void testSelfReferencingIndexFails() throws IOException {
+        Path index = new File(dir, "sitemap_index.xml").toPath();
+        Files.writeString(index, index("sitemap_index.xml"));
+
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(index)) {
+            assertThrows(SitemapGeneratorException.class, stream::toList);
+        }
+    }
+
+    @Test
+    void testReadNestedIndex() throws IOException {
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl("https://www.example.com/");
+        wsg.write();
+        Files.writeString(new File(dir, "inner.xml").toPath(), index("sitemap.xml"));
+        Files.writeString(new File(dir, "outer.xml").toPath(), index("inner.xml"));
+
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, "outer.xml").toPath())) {
+            assertEquals(List.of("https://www.example.com/"), stream.map(url -> url.getUrl().toString()).toList());
+        }
+    }
+
+    @Test
+    void testIndexCycleFails() throws IOException {
+        Files.writeString(new File(dir, "a.xml").toPath(), index("b.xml"));
+        Files.writeString(new File(dir, "b.xml").toPath(), index("a.xml"));
+
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, "a.xml").toPath())) {
+            assertThrows(SitemapGeneratorException.class, stream::toList, "Index cycle was read");
+        }
+    }
+
+    @Test
+    void testTooDeeplyNestedIndexFails() throws IOException {
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl("https://www.example.com/");
+        wsg.write();
+        String inner = "sitemap.xml";
+        for (int i = 0; i <= SitemapReader.MAX_INDEX_DEPTH; i++) {
+            Files.writeString(new File(dir, "index" + i + ".xml").toPath(), index(inner));
+            inner = "index" + i + ".xml";
+        }
+
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, inner).toPath())) {
+            assertThrows(SitemapGeneratorException.class, stream::toList, "Indexes nested without limit");
+        }
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, "index" + (SitemapReader.MAX_INDEX_DEPTH - 1) + ".xml").toPath())) {
+            assertEquals(1, stream.count());
+        }
+    }
+
+    @Test
+    void testRepeatedSitemapFails() throws IOException {
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", dir).build();
+        wsg.addUrl("https://www.example.com/");
+        wsg.write();
+        Files.writeString(new File(dir, "repeated.xml").toPath(), index("sitemap.xml", "sitemap.xml"));
+
+        try (SitemapReader reader = new SitemapReader(null, 2);
+             Stream<WebSitemapUrl> stream = reader.read(new File(dir, "repeated.xml").toPath())) {
+            assertThrows(SitemapGeneratorException.class, stream::toList, "Sitemap was read twice");
+        }
+    }
+
+    @Test
+    void testIndexFromStreamNeedsResolver() {
+        String index = index("sitemap.xml");
+        try (SitemapReader reader = new SitemapReader();
+             Stream<WebSitemapUrl> stream = reader.read(new ByteArrayInputStream(index.getBytes(StandardCharsets.UTF_8)))) {
+            assertThrows(SitemapGeneratorException.class, stream::toList);
+        }
+    }
+
+    private static String index(String... names) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<sitemapindex xmlns=\"https://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (String name : names) {
+            sb.append("  <sitemap><loc>https://www.example.com/").append(name).append("</loc></sitemap>\n");
+        }
+        return sb.append("</sitemapindex>").toString();
+    }
+}
@@ -0,0 +1,166 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.sinks.InMemorySitemapSink;
+import org.psloboda.sitemapgenerator.sinks.PathSitemapSink;
+import org.psloboda.sitemapgenerator.sinks.StagingSitemapSink;
+import org.psloboda.sitemapgenerator.sinks.StreamSitemapSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitemapSinkTest {
+    private static final String SITEMAP = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <urlset xmlns="https://www.sitemaps.org/schemas/sitemap/0.9" >
+              <url>
+                <loc>https://www.example.com/index.html</loc>
+              </url>
+            </urlset>""";
+
+    @Test
+    void testInMemorySinkStreaming() {
+        InMemorySitemapSink sink = new InMemorySitemapSink();
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .sink(sink)
+                .streaming(true)
+                .maxUrls(10)
+                .build();
+        for (int i = 0; i < 21; i++) {
+            wsg.addUrl("https://www.example.com/" + i);
+        }
+
+        List<File> files = wsg.write();
+
+        assertTrue(files.isEmpty(), "No files should be written");
+        Map<String, ByteBuffer> sitemaps = sink.getSitemaps();
+        assertEquals(3, sitemaps.size());
+        assertNull(sink.getSitemap("sitemap.xml"), "First sitemap was not renamed");
+        assertTrue(asString(sink.getSitemap("sitemap3.xml")).contains("<loc>https://www.example.com/20</loc>"));
+    }
+
+    @Test
+    void testStreamSink() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .sink(new StreamSitemapSink(out))
+                .build();
+        wsg.addUrl("https://www.example.com/index.html");
+        wsg.write();
+
+        assertEquals(SITEMAP, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testStreamSinkClosedOnAnotherThread() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamSitemapSink sink = new StreamSitemapSink(out);
+        WritableByteChannel first = sink.open("sitemap1.xml");
+        first.write(ByteBuffer.wrap("a".getBytes(StandardCharsets.UTF_8)));
+        Thread closer = new Thread(() -> {
+            try {
+                first.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        closer.start();
+        closer.join();
+
+        try (WritableByteChannel second = sink.open("sitemap2.xml")) {
+            second.write(ByteBuffer.wrap("b".getBytes(StandardCharsets.UTF_8)));
+        }
+        assertEquals("ab", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testPathSinkOnZipFileSystem() throws IOException {
+        File zip = File.createTempFile(SitemapSinkTest.class.getSimpleName(), ".zip");
+        assertTrue(zip.delete());
+        zip.deleteOnExit();
+
+        try (FileSystem fs = FileSystems.newFileSystem(URI.create("jar:" + zip.toURI()), Map.of("create", "true"))) {
+            WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                    .sink(new PathSitemapSink(fs.getPath("/")))
+                    .autoValidate(true)
+                    .build();
+            wsg.addUrl("https://www.example.com/index.html");
+            wsg.write();
+
+            assertEquals(SITEMAP, Files.readString(fs.getPath("/sitemap.xml")));
+        }
+        assertTrue(zip.delete());
+    }
+
+    @Test
+    void testStagingSinkPublishesAtomically() throws IOException {
+        Path root = Files.createTempDirectory(SitemapSinkTest.class.getSimpleName());
+        Path live = root.resolve("sitemaps");
+        try {
+            StagingSitemapSink first = publishRun(live, -1);
+            first.publish();
+            assertTrue(Files.isSymbolicLink(live));
+            assertTrue(Files.readString(live.resolve("sitemap_index.xml")).contains("sitemap3.xml"));
+
+            StagingSitemapSink second = publishRun(live, 15);
+            Path staged = second.getStagingDir();
+            assertTrue(Files.isSameFile(live.resolve("sitemap1.xml"), staged.resolve("sitemap1.xml")), "Unchanged sitemap wasn't linked");
+            assertFalse(Files.isSameFile(live.resolve("sitemap2.xml"), staged.resolve("sitemap2.xml")), "Changed sitemap was linked");
+            assertFalse(Files.readString(live.resolve("sitemap2.xml")).contains("changed"), "Live sitemap changed before publishing");
+            assertTrue(Files.isSameFile(live.resolve("sitemap_index.xml"), staged.resolve("sitemap_index.xml")), "Unchanged index wasn't linked");
+
+            second.publish();
+            assertEquals(staged, live.toRealPath());
+            assertTrue(Files.readString(live.resolve("sitemap2.xml")).contains("changed"));
+            try (Stream<Path> generations = Files.list(root)) {
+                assertEquals(3, generations.count(), "Previous generation wasn't deleted");
+            }
+            assertTrue(Files.exists(staged.resolveSibling(staged.getFileName() + ".manifest")), "Manifest wasn't written next to the generation");
+            try (Stream<Path> served = Files.list(live)) {
+                assertTrue(served.noneMatch(file -> file.getFileName().toString().endsWith(".manifest")), "Manifest is served");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static StagingSitemapSink publishRun(Path live, int changedIndex) throws IOException {
+        StagingSitemapSink staging = new StagingSitemapSink(live);
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .publish(staging)
+                .streaming(true)
+                .maxUrls(10)
+                .build();
+        for (int i = 0; i < 21; i++) {
+            wsg.addUrl("https://www.example.com/" + (i == changedIndex ? "changed" : i));
+        }
+        wsg.write();
+        wsg.writeSitemapsWithIndex();
+        return staging;
+    }
+
+    private static String asString(ByteBuffer bytes) {
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+}
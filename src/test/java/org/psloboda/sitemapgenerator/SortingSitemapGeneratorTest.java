@@ -0,0 +1,107 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.generators.SortingSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapUrl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortingSitemapGeneratorTest {
+    private static final Pattern LOC = Pattern.compile("<loc>(.*?)</loc>");
+
+    File dir;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Optional.ofNullable(dir).map(File::listFiles)
+                .stream()
+                .flatMap(Arrays::stream)
+                .forEach(file -> assertTrue(file.delete()));
+
+        assertTrue(dir.delete());
+        dir = null;
+    }
+
+    @Test
+    void testSortsByUrlAcrossSpilledRuns() throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            urls.add(String.format("https://www.example.com/%05d", i));
+        }
+        List<String> shuffled = new ArrayList<>(urls);
+        Collections.shuffle(shuffled, new Random(42));
+
+        File spillDir = new File(dir, "spill");
+        assertTrue(spillDir.mkdir());
+        SortingSitemapGenerator sorter = new SortingSitemapGenerator(
+                WebSitemapGenerator.builder("https://www.example.com", dir).maxUrls(1000).build(),
+                SortingSitemapGenerator.Order.URL)
+                .memoryLimit(20_000)
+                .tempDir(spillDir.toPath());
+        for (String url : shuffled) sorter.addUrl(url);
+
+        List<File> files = sorter.write();
+
+        assertEquals(5, files.size());
+        assertEquals(urls, locs(files), "URLs are out of order");
+        assertEquals(0, spillDir.list().length, "Spilled runs weren't deleted");
+        assertTrue(spillDir.delete());
+    }
+
+    @Test
+    void testSortsByLastModDescendingKeepingOptions() throws IOException {
+        SortingSitemapGenerator sorter = new SortingSitemapGenerator(
+                new WebSitemapGenerator("https://www.example.com", dir), SortingSitemapGenerator.Order.LAST_MOD_DESCENDING)
+                .memoryLimit(500);
+        sorter.addUrl(new WebSitemapUrl.Options("https://www.example.com/day").lastMod(LocalDate.of(2020, 1, 2)).build());
+        sorter.addUrl("https://www.example.com/none");
+        sorter.addUrl(new WebSitemapUrl.Options("https://www.example.com/zoned")
+                .lastMod(ZonedDateTime.of(2021, 6, 1, 12, 0, 0, 0, ZoneId.of("Europe/Berlin")))
+                .changeFreq(ChangeFreq.DAILY)
+                .priority(0.8)
+                .build());
+        sorter.addUrl(new WebSitemapUrl.Options("https://www.example.com/instant").lastMod(Instant.parse("2020-06-01T00:00:00Z")).build());
+
+        List<File> files = sorter.write();
+
+        assertEquals(List.of("https://www.example.com/zoned", "https://www.example.com/instant",
+                "https://www.example.com/day", "https://www.example.com/none"), locs(files));
+        String sitemap = Files.readString(files.get(0).toPath());
+        assertTrue(sitemap.contains("<lastmod>2021-06-01T10:00:00.000Z</lastmod>\n    <changefreq>daily</changefreq>\n    <priority>0.8</priority>"),
+                "Options were lost in the spill: " + sitemap);
+    }
+
+    private static List<String> locs(List<File> files) throws IOException {
+        List<String> locs = new ArrayList<>();
+        for (File file : files) {
+            Matcher matcher = LOC.matcher(Files.readString(file.toPath()));
+            while (matcher.find()) locs.add(matcher.group(1));
+        }
+        return locs;
+    }
+}
@@ -0,0 +1,155 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.enums.ChangeFreq;
+import org.psloboda.sitemapgenerator.exceptions.SitemapGeneratorException;
+import org.psloboda.sitemapgenerator.generators.web.WebSitemapGenerator;
+import org.psloboda.sitemapgenerator.readers.UrlListImporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlListImporterTest {
+    Path file;
+    List<String> errors = new ArrayList<>();
+    UrlListImporter.ErrorSink errorSink = (lineNumber, line, reason) -> errors.add(lineNumber + ": " + line);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile(getClass().getSimpleName(), ".txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    void testTextInOrderAcrossChunks() throws IOException {
+        StringBuilder sb = new StringBuilder("# exported urls\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("https://www.example.com/").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+            expected.append("https://www.example.com/").append(i).append('\n');
+        }
+        Files.writeString(file, sb.append("https://www.example.com/no-newline"));
+        expected.append("https://www.example.com/no-newline");
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null).build();
+        long added = new UrlListImporter(UrlListImporter.Format.TEXT)
+                .chunkSize(1000)
+                .errorSink(errorSink)
+                .importUrls(file, wsg);
+
+        assertEquals(1001, added);
+        assertEquals(List.of(), errors);
+        String sitemap = wsg.writeAsStrings().get(0);
+        StringBuilder locs = new StringBuilder();
+        for (String part : sitemap.split("<loc>")) {
+            if (part.contains("</loc>")) locs.append(part, 0, part.indexOf("</loc>")).append('\n');
+        }
+        assertEquals(expected.append('\n').toString(), locs.toString(), "URLs out of order");
+    }
+
+    @Test
+    void testCsvReportsBadLines() throws IOException {
+        Files.writeString(file, """
+                loc,lastmod,changefreq,priority
+                https://www.example.com/a,2020-01-01,daily,0.5
+                "https://www.example.com/b?x=1,2",,,
+                not a url
+                https://www.example.com/c,2020-01-01,sometimes,0.5
+                https://www.example.org/other-host
+                https://www.example.com/d,,,2.0
+                """);
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null).build();
+        long added = new UrlListImporter(UrlListImporter.Format.CSV)
+                .errorSink(errorSink)
+                .importUrls(file, wsg);
+
+        assertEquals(2, added);
+        assertEquals(List.of("4: not a url", "5: https://www.example.com/c,2020-01-01,sometimes,0.5",
+                "6: https://www.example.org/other-host", "7: https://www.example.com/d,,,2.0"), errors);
+        String sitemap = wsg.writeAsStrings().get(0);
+        assertTrue(sitemap.contains("<changefreq>" + ChangeFreq.DAILY + "</changefreq>"));
+        assertTrue(sitemap.contains("<loc>https://www.example.com/b?x=1,2</loc>"));
+    }
+
+    @Test
+    void testGeneratorFailureEndsImport() throws IOException {
+        Files.writeString(file, "https://www.example.com/a\nhttps://www.example.com/b\nhttps://www.example.com/c\n");
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .maxUrls(2)
+                .allowMultipleSitemaps(false)
+                .build();
+        UrlListImporter importer = new UrlListImporter(UrlListImporter.Format.TEXT).errorSink(errorSink);
+
+        assertThrows(SitemapGeneratorException.class, () -> importer.importUrls(file, wsg), "Generator failure was skipped as a bad line");
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void testJsonLines() throws IOException {
+        Files.writeString(file, """
+                {"loc": "https://www.example.com/a", "lastmod": "2020-01-01T10:00:00Z", "priority": 0.8}
+                {"loc": "https://www.example.com/\\u00e9", "changefreq": null}
+                {"loc": ["https://www.example.com/nested"]}
+                {"lastmod": "2020-01-01"}
+                """);
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null).build();
+        long added = new UrlListImporter(UrlListImporter.Format.JSONL)
+                .errorSink(errorSink)
+                .importUrls(file, wsg);
+
+        assertEquals(2, added);
+        assertEquals(2, errors.size(), errors.toString());
+        String sitemap = wsg.writeAsStrings().get(0);
+        assertTrue(sitemap.contains("<priority>0.8</priority>"));
+        assertTrue(sitemap.contains("<loc>https://www.example.com/é</loc>"));
+    }
+
+    @Test
+    void testLastModKeepsGranularity() throws IOException {
+        Files.writeString(file, """
+                https://www.example.com/date,2020-01-02,,
+                https://www.example.com/local,2020-01-02T10:00:00,,
+                https://www.example.com/offset,2020-01-02T10:00:00+02:00,,0.25
+                """);
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null).build();
+        long added = new UrlListImporter(UrlListImporter.Format.CSV)
+                .errorSink(errorSink)
+                .importUrls(file, wsg);
+
+        assertEquals(3, added);
+        assertEquals(List.of(), errors);
+        String sitemap = wsg.writeAsStrings().get(0);
+        assertTrue(sitemap.contains("<lastmod>2020-01-02</lastmod>"), sitemap);
+        assertTrue(sitemap.contains("<lastmod>2020-01-02T10:00:00.000</lastmod>"), sitemap);
+        assertTrue(sitemap.contains("<lastmod>2020-01-02T08:00:00.000Z</lastmod>"), sitemap);
+        assertTrue(sitemap.contains("<priority>0.25</priority>"), sitemap);
+    }
+
+    @Test
+    void testDuplicatesAreNotCounted() throws IOException {
+        Files.writeString(file, "https://www.example.com/a\nhttps://www.example.com/b\nhttps://www.example.com/a\n");
+
+        WebSitemapGenerator wsg = WebSitemapGenerator.builder("https://www.example.com", null)
+                .deduplicate(true)
+                .build();
+        long added = new UrlListImporter(UrlListImporter.Format.TEXT).importUrls(file, wsg);
+
+        assertEquals(2, added);
+        assertEquals(2, wsg.getUrlCount());
+    }
+}
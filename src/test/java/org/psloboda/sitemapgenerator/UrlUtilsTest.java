@@ -0,0 +1,47 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.utils.UrlUtils;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlUtilsTest {
+
+    @Test
+    void testEscapeXml() {
+        assertEquals("a&amp;b&apos;c&quot;d&gt;e&lt;f", UrlUtils.escapeXml("a&b'c\"d>e<f"));
+        assertEquals("&amp;&amp;", UrlUtils.escapeXml("&&"));
+    }
+
+    @Test
+    void testEscapeXmlReturnsCleanStringItself() {
+        String clean = "https://www.example.com/café/😀?a=1\tb";
+        assertSame(clean, UrlUtils.escapeXml(clean));
+    }
+
+    @Test
+    void testEscapeXmlDropsIllegalCharacters() {
+        assertEquals("ab\n\r\tc&amp;d", UrlUtils.escapeXml("a\u0000b\n\r\t\u001fc&\uFFFEd\uFFFF"));
+        assertEquals("xy", UrlUtils.escapeXml("x\uD83Dy\uDE00"), "Unpaired surrogates should be dropped");
+    }
+
+    @Test
+    void testEscapeXmlUrlMatchesToString() throws Exception {
+        for (String spec : new String[]{"https://www.example.com", "http://user:pw@example.com:8080/a/b?c=1&d=2#e&f",
+                "https://example.com/?", "https://example.com/#", "ftp://example.com/a&b"}) {
+            URL url = new URL(spec);
+            StringBuilder sb = new StringBuilder();
+            UrlUtils.escapeXml(url, sb);
+            assertEquals(UrlUtils.escapeXml(url.toString()), sb.toString(), spec);
+        }
+    }
+
+    @Test
+    void testEscapeXmlAppends() {
+        StringBuilder sb = new StringBuilder("<loc>");
+        UrlUtils.escapeXml("https://www.example.com/?a=1&b=2", sb);
+        assertEquals("<loc>https://www.example.com/?a=1&amp;b=2", sb.toString());
+    }
+}
@@ -0,0 +1,68 @@
+package org.psloboda.sitemapgenerator;
+
+import org.psloboda.sitemapgenerator.utils.W3CDateParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class W3CDateParserTest {
+
+    @Test
+    void testParseEpochMillisOfEveryGranularity() {
+        assertEquals(Instant.parse("2020-01-01T00:00:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020"));
+        assertEquals(Instant.parse("2020-02-01T00:00:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020-02"));
+        assertEquals(Instant.parse("2020-02-29T00:00:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020-02-29"));
+        assertEquals(Instant.parse("2020-02-29T13:45:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020-02-29T13:45Z"));
+        assertEquals(Instant.parse("2020-02-29T11:45:30Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020-02-29T13:45:30+02:00"));
+        assertEquals(Instant.parse("2020-02-29T18:15:30.120Z").toEpochMilli(), W3CDateParser.parseEpochMillis("2020-02-29T13:45:30.12-04:30"));
+        assertEquals(Instant.parse("1969-12-31T23:59:59.999Z").toEpochMilli(), W3CDateParser.parseEpochMillis("1969-12-31T23:59:59.999999999"));
+    }
+
+    @Test
+    void testParseEpochMillisMatchesJavaTime() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            OffsetDateTime dateTime = Instant.ofEpochSecond(random.nextLong() % 30_000_000_000L, random.nextInt(1000) * 1_000_000)
+                    .atOffset(ZoneOffset.ofTotalSeconds((random.nextInt(37) - 18) * 1800));
+            String text = dateTime.toString();
+            if (text.length() == 22) text = text.substring(0, 16) + ":00" + text.substring(16); // toString drops zero seconds
+            assertEquals(dateTime.toInstant().toEpochMilli(), W3CDateParser.parseEpochMillis(text), text);
+        }
+    }
+
+    @Test
+    void testParseBytesInRange() {
+        byte[] line = "https://www.example.com/,2021-06-01T10:00:00Z,daily".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Instant.parse("2021-06-01T10:00:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis(line, 25, 45));
+        assertEquals(Instant.parse("2021-06-01T00:00:00Z").toEpochMilli(), W3CDateParser.parseEpochMillis("x2021-06-01x", 1, 11));
+    }
+
+    @Test
+    void testParseKeepsGranularity() {
+        assertEquals(LocalDate.of(2020, 1, 1), W3CDateParser.parse("2020"));
+        assertEquals(LocalDate.of(2020, 5, 1), W3CDateParser.parse("2020-05"));
+        assertEquals(LocalDate.of(2020, 5, 17), W3CDateParser.parse("2020-05-17"));
+        assertEquals(LocalDateTime.of(2020, 5, 17, 8, 30, 0, 123_000_000), W3CDateParser.parse("2020-05-17T08:30:00.123"));
+        assertEquals(Instant.parse("2020-05-17T08:30:00Z"), W3CDateParser.parse("2020-05-17T08:30Z"));
+        assertEquals(ZonedDateTime.of(2020, 5, 17, 8, 30, 5, 0, ZoneOffset.ofHours(-7)), W3CDateParser.parse("2020-05-17T08:30:05-07:00"));
+    }
+
+    @Test
+    void testRejectsMalformedDates() {
+        String[] bad = {"", "20", "2020-1-01", "2020-13", "2021-02-29", "2020-05-17T24:00Z", "2020-05-17T08:30:61Z",
+                "2020-05-17T08:30+0200", "2020-05-17T08:30:00.Z", "2020-05-17 08:30Z", "2020-05-17T08:30+19:00", "2020-05-17T08:30Zx"};
+        for (String text : bad) {
+            assertThrows(DateTimeParseException.class, () -> W3CDateParser.parseEpochMillis(text), text);
+        }
+    }
+}
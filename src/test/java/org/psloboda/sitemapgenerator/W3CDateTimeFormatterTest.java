@@ -3,12 +3,24 @@ package org.psloboda.sitemapgenerator;
 import org.psloboda.sitemapgenerator.utils.W3CDateTimeFormatter;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.time.*;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.Temporal;
+import java.util.Base64;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class W3CDateTimeFormatterTest {
+    /**
+     * A formatter serialized by sitemapgen4j 1.0.0, before the pattern was serialized
+     */
+    private static final String SERIALIZED_1_0_0 = "rO0ABXNyADhvcmcucHNsb2JvZGEuc2l0ZW1hcGdlbmVyYXRvci51dGlscy5XM0NEYXRlVGltZUZvcm1hdHRlcplgPUu3ZjugAgABTAAGem9uZUlkdAASTGphdmEvdGltZS9ab25lSWQ7eHBzcgANamF2YS50aW1lLlNlcpVdhLobIkiyDAAAeHB3BgcAA0dNVHg=";
 
     @Test
     void testFormatEpoch() {
@@ -42,6 +54,40 @@ class W3CDateTimeFormatterTest {
         verifyPatternFormat(epoch, "1969-12-31T16:00:00.000-08:00", zoneId);
     }
 
+    @Test
+    void testFormatMatchesDateTimeFormatter() {
+        Random random = new Random(7);
+        ZoneId[] zones = {W3CDateTimeFormatter.ZULU, ZoneId.of("America/New_York"), ZoneId.of("Asia/Kolkata"), ZoneOffset.ofHours(-11)};
+        for (int i = 0; i < 2000; i++) {
+            Instant instant = Instant.ofEpochSecond(random.nextLong() % 100_000_000_000L, random.nextInt(1_000_000_000));
+            ZoneId zoneId = zones[i % zones.length];
+            Temporal[] temporals = {instant, instant.atZone(ZoneId.of("Europe/Berlin")),
+                    LocalDateTime.ofInstant(instant, ZoneOffset.UTC), LocalDate.ofInstant(instant, ZoneOffset.UTC)};
+            for (Temporal temporal : temporals) {
+                String expected = DateTimeFormatter.ofPattern(temporal instanceof LocalDate ? "yyyy-MM-dd" : "yyyy-MM-dd'T'HH:mm:ss.SSS[XXX]")
+                        .withZone(zoneId).format(temporal);
+                verifyPatternFormat(temporal, expected, zoneId);
+                for (W3CDateTimeFormatter.Pattern pattern : W3CDateTimeFormatter.Pattern.values()) {
+                    if (temporal instanceof LocalDate && pattern.ordinal() < W3CDateTimeFormatter.Pattern.DAY.ordinal()) continue;
+                    verifyPatternFormat(temporal, pattern, pattern.getFormatter().withZone(zoneId).format(temporal), zoneId);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFormatReusesLastValue() {
+        W3CDateTimeFormatter format = new W3CDateTimeFormatter();
+        LocalDate date = LocalDate.of(2020, 5, 17);
+        String first = format.format(date);
+        assertSame(first, format.format(LocalDate.of(2020, 5, 17)));
+
+        StringBuilder sb = new StringBuilder("<lastmod>");
+        format.format(date, sb);
+        format.format(LocalDateTime.of(2020, 5, 17, 8, 30), sb);
+        assertEquals("<lastmod>2020-05-172020-05-17T08:30:00.000", sb.toString());
+    }
+
     @Test
     void testParseEpoch() {
         ZonedDateTime date = ZonedDateTime.ofInstant(Instant.EPOCH, W3CDateTimeFormatter.ZULU);
@@ -122,4 +168,24 @@ class W3CDateTimeFormatterTest {
         assertEquals(expected, actual, source + " " + format);
     }
 
+
+    @Test
+    void testSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new W3CDateTimeFormatter(W3CDateTimeFormatter.Pattern.SECOND));
+        }
+        W3CDateTimeFormatter read = deserialize(bytes.toByteArray());
+        assertEquals("1970-01-01T00:00:00Z", read.format(Instant.EPOCH));
+        assertEquals(Instant.EPOCH, read.parseInstant("1970-01-01T00:00:00Z"));
+
+        W3CDateTimeFormatter old = deserialize(Base64.getDecoder().decode(SERIALIZED_1_0_0));
+        assertEquals("1970-01-01T00:00:00.000Z", old.format(Instant.EPOCH));
+    }
+
+    private static W3CDateTimeFormatter deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (W3CDateTimeFormatter) in.readObject();
+        }
+    }
 }